@@ -0,0 +1,256 @@
+package uk.ac.bris.cs.scotlandyard;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.ai.RandomAi;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.ImmutableBoard;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import static java.lang.String.format;
+
+/**
+ * Plays whole games between two AIs without the UI, for evaluating AIs over many games.
+ * <br>
+ * Each game is set up from a seed with {@link ScotlandYard#generateMrXLocation(int)} and
+ * {@link ScotlandYard#generateDetectiveLocations(int, int)}, given fresh AIs from the suppliers
+ * (AIs may keep state between moves, so instances are never shared between games) and played on
+ * {@link MyGameStateFactory} until there is a winner. Games run as tasks on a caller supplied
+ * executor, e.g a {@link ForkJoinPool}.
+ */
+public final class Simulator {
+
+	/**
+	 * The outcome of a batch of games
+	 */
+	public static final class Report {
+		public final int games;
+		public final int mrXWins;
+		public final long moves;
+		public final long nanos;
+
+		Report(int games, int mrXWins, long moves, long nanos) {
+			this.games = games;
+			this.mrXWins = mrXWins;
+			this.moves = moves;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * @return the number of games won by the detectives
+		 */
+		public int detectiveWins() { return games - mrXWins; }
+
+		/**
+		 * @return the fraction of games won by MrX
+		 */
+		public double mrXWinRate() { return games == 0 ? 0 : (double) mrXWins / games; }
+
+		/**
+		 * @return the fraction of games won by the detectives
+		 */
+		public double detectiveWinRate() { return games == 0 ? 0 : 1 - mrXWinRate(); }
+
+		/**
+		 * @return the number of games finished per second of wall time
+		 */
+		public double gamesPerSecond() { return perSecond(games); }
+
+		/**
+		 * @return the number of moves made per second of wall time
+		 */
+		public double movesPerSecond() { return perSecond(moves); }
+
+		private double perSecond(long count) {
+			return nanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+		}
+
+		@Override public String toString() {
+			return format("%d games, %d moves in %.2fs (%.1f games/s, %.0f moves/s); " +
+							"MrX won %.1f%%, detectives won %.1f%%",
+					games, moves, nanos / 1e9, gamesPerSecond(), movesPerSecond(),
+					mrXWinRate() * 100, detectiveWinRate() * 100);
+		}
+	}
+
+	private final GameSetup setup;
+	private final Supplier<? extends Ai> mrXAi;
+	private final Supplier<? extends Ai> detectiveAi;
+	private final int detectives;
+	private final Pair<Long, TimeUnit> timeout;
+
+	/**
+	 * @param setup the game setup
+	 * @param mrXAi makes the AI playing MrX, once per game
+	 * @param detectiveAi makes the AI playing all detectives, once per game
+	 * @param detectives the number of detectives, between 1 and 5
+	 * @param timeout the time per move the AIs are told they have
+	 */
+	public Simulator(@Nonnull GameSetup setup,
+	                 @Nonnull Supplier<? extends Ai> mrXAi,
+	                 @Nonnull Supplier<? extends Ai> detectiveAi,
+	                 int detectives,
+	                 @Nonnull Pair<Long, TimeUnit> timeout) {
+		if (detectives < 1 || detectives > ScotlandYard.DETECTIVES.size())
+			throw new IllegalArgumentException("Bad detective count: " + detectives);
+		this.setup = Objects.requireNonNull(setup);
+		this.mrXAi = Objects.requireNonNull(mrXAi);
+		this.detectiveAi = Objects.requireNonNull(detectiveAi);
+		this.detectives = detectives;
+		this.timeout = Objects.requireNonNull(timeout);
+	}
+
+	/**
+	 * The result of one game
+	 */
+	private static final class Outcome {
+		final boolean mrXWon;
+		final int moves;
+
+		Outcome(boolean mrXWon, int moves) {
+			this.mrXWon = mrXWon;
+			this.moves = moves;
+		}
+	}
+
+	/**
+	 * @param seed the seed to set the game up from
+	 * @return whether MrX won
+	 */
+	public boolean play(int seed) { return playGame(seed).mrXWon; }
+
+	private Outcome playGame(int seed) {
+		var mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(),
+				ScotlandYard.generateMrXLocation(seed));
+		var locations = ScotlandYard.generateDetectiveLocations(seed, detectives);
+		var pieces = ScotlandYard.DETECTIVES.asList();
+		var players = IntStream.range(0, detectives)
+				.mapToObj(i -> new Player(pieces.get(i),
+						ScotlandYard.defaultDetectiveTickets(), locations.get(i)))
+				.collect(ImmutableList.toImmutableList());
+		GameState state = new MyGameStateFactory().build(setup, mrX, players);
+		Ai mrXPlayer = mrXAi.get(), detectivePlayer = detectiveAi.get();
+		mrXPlayer.onStart();
+		detectivePlayer.onStart();
+		int moves = 0;
+		try {
+			while (state.getWinner().isEmpty()) {
+				var available = state.getAvailableMoves();
+				boolean mrXTurn = available.iterator().next().commencedBy().isMrX();
+				Ai ai = mrXTurn ? mrXPlayer : detectivePlayer;
+				// a snapshot, so the AI can't advance the state or cast it to find MrX
+				Move move = ai.pickMove(new ImmutableBoard(state), Deadline.of(timeout));
+				if (!available.contains(move)) {
+					throw new IllegalStateException("Ai(" + ai.name() + ") selected an invalid " +
+							"move, got: " + move + ", was expecting one of " + available);
+				}
+				state = state.advance(move);
+				moves++;
+			}
+		} finally {
+			mrXPlayer.onTerminate();
+			detectivePlayer.onTerminate();
+		}
+		return new Outcome(state.getWinner().contains(Piece.MrX.MRX), moves);
+	}
+
+	/**
+	 * Plays one game per seed, in parallel
+	 *
+	 * @param seeds the seeds of the games
+	 * @param executor the executor to run games on; not shut down afterwards
+	 * @return the report over all games
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 * @throws IllegalStateException if a game fails, e.g an AI throws or picks an invalid move
+	 */
+	@Nonnull public Report run(@Nonnull List<Integer> seeds, @Nonnull ExecutorService executor)
+			throws InterruptedException {
+		long start = System.nanoTime();
+		var futures = new ArrayList<Future<Outcome>>(seeds.size());
+		for (int seed : seeds) futures.add(executor.submit(() -> playGame(seed)));
+		int mrXWins = 0;
+		long moves = 0;
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				Outcome outcome;
+				try {
+					outcome = futures.get(i).get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Game with seed " + seeds.get(i) + " failed",
+							e.getCause());
+				}
+				if (outcome.mrXWon) mrXWins++;
+				moves += outcome.moves;
+			}
+		} finally {
+			// don't leave the remaining games running after a failure
+			for (var future : futures) future.cancel(true);
+		}
+		return new Report(seeds.size(), mrXWins, moves, System.nanoTime() - start);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Supplier<Ai> aiOf(String className) throws ReflectiveOperationException {
+		var cls = Class.forName(className);
+		if (!Ai.class.isAssignableFrom(cls))
+			throw new IllegalArgumentException(cls + " does not implement " + Ai.class);
+		var constructor = ((Class<Ai>) cls).getConstructor();
+		return () -> {
+			try {
+				return constructor.newInstance();
+			} catch (InstantiationException | IllegalAccessException
+					| InvocationTargetException e) {
+				throw new RuntimeException("Unable to create Ai instance of class " + cls, e);
+			}
+		};
+	}
+
+	/**
+	 * Runs a batch of games and prints the report. Arguments, all optional: the number of games
+	 * (100), the number of detectives (5), the number of threads (all processors), the class of
+	 * MrX's AI and the class of the detectives' AI (both {@link RandomAi}).
+	 */
+	public static void main(String[] args)
+			throws IOException, InterruptedException, ReflectiveOperationException {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int detectives = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		Supplier<Ai> mrXAi = args.length > 3 ? aiOf(args[3]) : RandomAi::new;
+		Supplier<Ai> detectiveAi = args.length > 4 ? aiOf(args[4]) : RandomAi::new;
+		var simulator = new Simulator(
+				new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS),
+				mrXAi, detectiveAi, detectives, new Pair<>(15L, TimeUnit.SECONDS));
+		var seeds = IntStream.range(0, games).boxed().collect(Collectors.toList());
+		var pool = new ForkJoinPool(threads);
+		try {
+			System.out.println(simulator.run(seeds, pool));
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
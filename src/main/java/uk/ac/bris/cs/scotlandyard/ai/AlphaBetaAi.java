@@ -0,0 +1,458 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Bound;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.DistanceOracle;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.IntMove;
+import uk.ac.bris.cs.scotlandyard.model.IntMoveList;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator.MoveConsumer;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Plays either side with an anytime iterative deepening alpha-beta search.
+ * <br>
+ * The search is paranoid: the detectives are one player who moves a piece per ply, scoring
+ * positions the opposite of MrX, so scores only change sign where the side to move changes.
+ * Moves are tried in the order of the {@link TranspositionTable} move, two killer moves per ply,
+ * then the history table, with single moves before double moves. Each depth after the first few
+ * is searched in an aspiration window around the score of the last, widened on a fail.
+ * <br>
+ * MrX's double moves multiply his branching factor by a hundred or so, so below the root they are
+ * only searched when a detective is within {@link #DOUBLE_MOVE_DISTANCE} moves of him, where a
+ * double move could be his only escape. As the moves of a position come singles first, the rest
+ * are not even generated.
+ * <br>
+ * The search has a hard deadline a safety margin before the one given to
+ * {@link #pickMove(Board, Deadline)}, checked every thousand nodes or so along with whether the
+ * deadline was cancelled. The move played is the best of the last depth searched to the end,
+ * which is also offered to the deadline as each depth completes; a depth that would likely not
+ * finish in time is not started. The detectives can't see MrX, so they search as if he were at
+ * the candidate of a {@link MrXLocationTracker} with the most paths consistent with the travel
+ * log.
+ * <br>
+ * On the opponent's turn the AI ponders with the same search, so the transposition table is
+ * warm with the positions after the opponent's likely replies when its own turn comes. Pondering
+ * as MrX, it searches from where its last move took him; as the detectives, MrX's moves are
+ * hidden from it, so it searches the moves he could make from where he likely is.
+ */
+public final class AlphaBetaAi implements Ai {
+
+	/**
+	 * The score of a win, less the plies it takes
+	 */
+	public static final int WIN = 30000;
+	/**
+	 * The distance in moves from the nearest detective within which MrX's double moves are
+	 * searched below the root
+	 */
+	public static final int DOUBLE_MOVE_DISTANCE = 2;
+
+	private static final int INFINITY = WIN + 1;
+	private static final int MAX_PLY = 64;
+	// scores beyond this are wins, which the table keeps relative to the position
+	private static final int WIN_BOUND = WIN - MAX_PLY;
+	private static final int ASPIRATION = 40;
+	// depths below this are cheap enough to search with the full window
+	private static final int ASPIRATION_DEPTH = 4;
+	private static final int CHECK_INTERVAL = 0x3FF;
+	// distances beyond this are all as safe for the evaluation
+	private static final int FAR = 8;
+	// at most this much of the budget is kept back for returning the move in time
+	private static final long MAX_MARGIN = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private final TranspositionTable table;
+	private final IntMoveList[] moves = new IntMoveList[MAX_PLY];
+	private final int[][] order = new int[MAX_PLY][];
+	private final int[][] killers = new int[MAX_PLY][2];
+	// indexed by piece index and final destination
+	private final int[] history = new int[8 << 10];
+
+	private MrXLocationTracker tracker;
+	private GameSetup trackedSetup;
+	// where the last move picked took MrX, -1 if it was a detective's
+	private int ownMrXLocation = -1;
+	private volatile Deadline pondering;
+
+	// the state of the running search
+	private DistanceOracle oracle;
+	private Deadline token;
+	private long deadline;
+	private boolean stopped;
+	private long nodes;
+	private int rootMove;
+	private IntMoveList generating;
+	private boolean withDoubles;
+	private final MoveConsumer collect = move -> {
+		// doubles come last, so skipping them ends the generation
+		if (!withDoubles && move instanceof Move.DoubleMove) return false;
+		generating.add(IntMove.of(move));
+		return true;
+	};
+
+	private volatile int depth;
+	private volatile long searched;
+	private volatile int score;
+
+	/**
+	 * Searches with a 64MB transposition table
+	 */
+	public AlphaBetaAi() { this(64); }
+
+	/**
+	 * @param megabytes the size of the transposition table
+	 * @throws IllegalArgumentException if less than one megabyte is asked for
+	 */
+	public AlphaBetaAi(int megabytes) {
+		this.table = new TranspositionTable(megabytes);
+		for (int ply = 0; ply < MAX_PLY; ply++) {
+			moves[ply] = new IntMoveList();
+			order[ply] = new int[64];
+		}
+	}
+
+	@Nonnull @Override public String name() { return "Alpha-beta"; }
+
+	@Override public synchronized void onStart() {
+		table.clear();
+		Arrays.fill(history, 0);
+		ownMrXLocation = -1;
+		if (tracker != null) tracker.reset();
+	}
+
+	/**
+	 * @return the depth the last search for a move completed, in plies
+	 */
+	public int depth() { return depth; }
+
+	/**
+	 * @return the number of positions the last search for a move visited
+	 */
+	public long nodes() { return searched; }
+
+	/**
+	 * @return the score of the last completed depth, for the side that moved
+	 */
+	public int score() { return score; }
+
+	@Override public String toString() {
+		return String.format("%s: depth %d, %d nodes, score %d", name(), depth, searched, score);
+	}
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board,
+	                                        Pair<Long, TimeUnit> timeoutPair) {
+		return pickMove(board, Deadline.of(timeoutPair));
+	}
+
+	@Nonnull @Override public synchronized Move pickMove(@Nonnull Board board,
+	                                                     @Nonnull Deadline token) {
+		var move = think(board, token, false);
+		ownMrXLocation = move.commencedBy().isMrX()
+				? move.visit(new Move.FunctionalVisitor<>(m -> m.destination, m -> m.destination2))
+				: -1;
+		return move;
+	}
+
+	@Override public synchronized void ponder(@Nonnull Board board, @Nonnull Deadline token) {
+		if (token.isExpired()) return;
+		pondering = token;
+		try {
+			think(board, token, true);
+		} finally {
+			pondering = null;
+		}
+	}
+
+	@Override public void onTerminate() {
+		var current = pondering;
+		if (current != null) current.cancel();
+	}
+
+	private Move think(Board board, Deadline token, boolean ponder) {
+		long start = System.nanoTime();
+		long budget = Math.max(0, token.nanoTime() - start);
+		this.token = token;
+		deadline = start + budget - Math.min(budget / 10, MAX_MARGIN);
+		var available = board.getAvailableMoves();
+		SearchState state;
+		if (available.isEmpty()) {
+			// pondering as the detectives on MrX's turn, whose moves are hidden from them
+			if (!ponder) throw new IllegalArgumentException("No moves to pick from");
+			state = SearchState.of(board, likelyMrXLocation(board));
+			var predicted = new ArrayList<Move>();
+			state.addMoves(predicted);
+			if (predicted.isEmpty()) return null;
+			available = ImmutableSet.copyOf(predicted);
+		} else {
+			var mover = available.iterator().next();
+			int mrX;
+			if (mover.commencedBy().isMrX()) mrX = mover.source();
+			else mrX = ponder && ownMrXLocation >= 0 ? ownMrXLocation : likelyMrXLocation(board);
+			state = SearchState.of(board, mrX);
+		}
+		var first = available.iterator().next();
+		token.offer(first);
+		if (available.size() == 1) return first;
+
+		oracle = board.getSetup().distanceOracle();
+		stopped = false;
+		nodes = 0;
+		table.newSearch();
+		for (int[] killer : killers) Arrays.fill(killer, IntMove.NONE);
+		for (int i = 0; i < history.length; i++) history[i] >>= 2;
+
+		int best = IntMove.NONE;
+		int previous = 0;
+		int completed = 0;
+		for (int depth = 1; depth < MAX_PLY; depth++) {
+			long started = System.nanoTime();
+			int window = ASPIRATION;
+			int alpha = depth < ASPIRATION_DEPTH ? -INFINITY : previous - window;
+			int beta = depth < ASPIRATION_DEPTH ? INFINITY : previous + window;
+			int score;
+			while (true) {
+				score = search(state, depth, 0, alpha, beta);
+				if (stopped) break;
+				if (score <= alpha) alpha = Math.max(-INFINITY, alpha - window);
+				else if (score >= beta) beta = Math.min(INFINITY, beta + window);
+				else break;
+				window *= 4;
+			}
+			if (stopped) break;
+			best = rootMove;
+			previous = score;
+			completed = depth;
+			offer(token, available, best);
+			// nothing to gain once the outcome is known
+			if (Math.abs(score) > WIN_BOUND) break;
+			// each depth takes a few times longer than the last
+			long now = System.nanoTime();
+			if (deadline - now < (now - started) * 2) break;
+		}
+		if (!ponder) {
+			this.depth = completed;
+			this.searched = nodes;
+			this.score = previous;
+		}
+
+		if (best == IntMove.NONE) best = fallback(state);
+		return offer(token, available, best);
+	}
+
+	private static Move offer(Deadline token, Set<Move> available, int best) {
+		for (Move move : available) {
+			if (IntMove.of(move) == best) {
+				token.offer(move);
+				return move;
+			}
+		}
+		return token.bestSoFar().orElseThrow();
+	}
+
+	// the move the table suggests, or any move if the first depth didn't finish
+	private int fallback(SearchState state) {
+		long data = table.probe(state.positionKey());
+		if (data != TranspositionTable.MISS && TranspositionTable.move(data) != IntMove.NONE)
+			return TranspositionTable.move(data);
+		var list = moves[0];
+		generate(state, list, true);
+		return list.isEmpty() ? IntMove.NONE : list.get(0);
+	}
+
+	// negamax: the score is for the side to move, MrX or the detectives
+	private int search(SearchState state, int depth, int ply, int alpha, int beta) {
+		if ((++nodes & CHECK_INTERVAL) == 0
+				&& (System.nanoTime() - deadline > 0 || token.isCancelled())) stopped = true;
+		if (stopped) return 0;
+		boolean mrX = state.isMrXTurn();
+		switch (state.winner()) {
+			case MRX: return mrX ? WIN - ply : ply - WIN;
+			case DETECTIVES: return mrX ? ply - WIN : WIN - ply;
+			default: break;
+		}
+		if (depth == 0 || ply == MAX_PLY - 1) return mrX ? evaluate(state) : -evaluate(state);
+
+		long key = state.positionKey();
+		long data = table.probe(key);
+		int hashMove = IntMove.NONE;
+		if (data != TranspositionTable.MISS) {
+			hashMove = TranspositionTable.move(data);
+			if (ply > 0 && TranspositionTable.depth(data) >= depth) {
+				int stored = fromTable(TranspositionTable.score(data), ply);
+				switch (TranspositionTable.bound(data)) {
+					case EXACT: return stored;
+					case LOWER: if (stored >= beta) return stored; break;
+					case UPPER: if (stored <= alpha) return stored; break;
+				}
+			}
+		}
+
+		var list = moves[ply];
+		generate(state, list, ply == 0 || nearestDetective(state) <= DOUBLE_MOVE_DISTANCE);
+		if (list.isEmpty()) return mrX ? evaluate(state) : -evaluate(state);
+		var scores = score(list, ply, hashMove);
+
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = IntMove.NONE;
+		for (int i = 0; i < list.size(); i++) {
+			pickNext(list, scores, i);
+			int move = list.get(i);
+			state.apply(move);
+			int value = state.isMrXTurn() == mrX
+					? search(state, depth - 1, ply + 1, alpha, beta)
+					: -search(state, depth - 1, ply + 1, -beta, -alpha);
+			state.undo();
+			if (stopped) return 0;
+			if (value > best) {
+				best = value;
+				bestMove = move;
+				if (value > alpha) alpha = value;
+				if (alpha >= beta) {
+					cutoff(move, ply, depth);
+					break;
+				}
+			}
+		}
+		if (ply == 0) rootMove = bestMove;
+		Bound bound = best >= beta ? Bound.LOWER
+				: best > originalAlpha ? Bound.EXACT
+				: Bound.UPPER;
+		table.store(key, bound == Bound.UPPER ? IntMove.NONE : bestMove,
+				toTable(best, ply), depth, bound);
+		return best;
+	}
+
+	private void generate(SearchState state, IntMoveList list, boolean doubles) {
+		list.clear();
+		generating = list;
+		withDoubles = doubles;
+		state.forEachMove(collect);
+	}
+
+	private int[] score(IntMoveList list, int ply, int hashMove) {
+		var scores = order[ply];
+		if (scores.length < list.size()) order[ply] = scores = new int[list.size() * 2];
+		for (int i = 0; i < list.size(); i++) {
+			int move = list.get(i);
+			if (move == hashMove) scores[i] = 1 << 30;
+			else if (move == killers[ply][0]) scores[i] = 1 << 29;
+			else if (move == killers[ply][1]) scores[i] = 1 << 28;
+			else scores[i] = (IntMove.isDouble(move) ? 0 : 1 << 27)
+					+ Math.min(history[historyIndex(move)], (1 << 27) - 1);
+		}
+		return scores;
+	}
+
+	// moves are picked best first as they're needed, as a cutoff often comes early
+	private static void pickNext(IntMoveList list, int[] scores, int from) {
+		int best = from;
+		for (int i = from + 1; i < list.size(); i++) if (scores[i] > scores[best]) best = i;
+		if (best != from) {
+			list.swap(from, best);
+			int score = scores[from];
+			scores[from] = scores[best];
+			scores[best] = score;
+		}
+	}
+
+	private void cutoff(int move, int ply, int depth) {
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+		history[historyIndex(move)] += depth * depth;
+	}
+
+	private static int historyIndex(int move) {
+		return IntMove.pieceIndexOf(move) << 10 | IntMove.finalDestination(move);
+	}
+
+	private static int toTable(int score, int ply) {
+		if (score > WIN_BOUND) return score + ply;
+		if (score < -WIN_BOUND) return score - ply;
+		return score;
+	}
+
+	private static int fromTable(int score, int ply) {
+		if (score > WIN_BOUND) return score - ply;
+		if (score < -WIN_BOUND) return score + ply;
+		return score;
+	}
+
+	private int nearestDetective(SearchState state) {
+		int nearest = DistanceOracle.UNREACHABLE;
+		for (int i = 1; i < state.pieceCount(); i++)
+			nearest = Math.min(nearest, oracle.detectiveDistance(state.location(i), state.location(0)));
+		return nearest;
+	}
+
+	// MrX's view: far from the nearest detective first, then from the others, then tickets to escape
+	private int evaluate(SearchState state) {
+		int nearest = FAR;
+		int total = 0;
+		for (int i = 1; i < state.pieceCount(); i++) {
+			int distance = Math.min(FAR,
+					oracle.detectiveDistance(state.location(i), state.location(0)));
+			nearest = Math.min(nearest, distance);
+			total += distance;
+		}
+		return nearest * 100 + total * 10
+				+ state.tickets(0, Ticket.SECRET) * 10 + state.tickets(0, Ticket.DOUBLE) * 50;
+	}
+
+	private int likelyMrXLocation(Board board) {
+		if (tracker == null || !board.getSetup().equals(trackedSetup)) {
+			trackedSetup = board.getSetup();
+			tracker = new MrXLocationTracker(trackedSetup);
+		}
+		tracker.update(board);
+		var candidates = tracker.candidates();
+		int likely = -1;
+		double most = -1;
+		for (int node = Bitboard.nextSetBit(candidates, 0); node >= 0;
+		     node = Bitboard.nextSetBit(candidates, node + 1)) {
+			double paths = tracker.pathCount(node);
+			if (paths > most) {
+				likely = node;
+				most = paths;
+			}
+		}
+		if (likely >= 0) return likely;
+		// the log contradicts the usual starts, so trust the last reveal if there is one
+		var log = board.getMrXTravelLog();
+		for (int i = log.size() - 1; i >= 0; i--) {
+			LogEntry entry = log.get(i);
+			if (entry.location().isPresent()) return entry.location().get();
+		}
+		// or anywhere no detective is
+		var graph = trackedSetup.compactGraph();
+		var free = Bitboard.empty(graph.maxNode());
+		for (int node = 0; node <= graph.maxNode(); node++)
+			if (graph.contains(node)) Bitboard.set(free, node);
+		for (Piece piece : board.getPlayers()) {
+			if (piece.isDetective())
+				board.getDetectiveLocation((Detective) piece)
+						.ifPresent(location -> Bitboard.clear(free, location));
+		}
+		return Bitboard.nextSetBit(free, 0);
+	}
+}
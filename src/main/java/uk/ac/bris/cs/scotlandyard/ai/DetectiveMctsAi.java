@@ -0,0 +1,107 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * Plays the detectives with information set Monte Carlo tree search.
+ * <br>
+ * The detectives can't see MrX, so every iteration of the search puts him at a station sampled
+ * from where he could be: the candidates of a {@link MrXLocationTracker} kept up to date with the
+ * boards this AI is given, weighted by the number of paths consistent with the travel log that
+ * end at each. All samples share one tree (see {@link MctsAi}), and every search thread samples
+ * on its own, so the determinizations run in parallel.
+ * <br>
+ * {@link #iterationsPerSecond()} reports the speed of the last search, for sizing machines.
+ */
+public final class DetectiveMctsAi extends MctsAi {
+
+	private MrXLocationTracker tracker;
+	private GameSetup trackedSetup;
+	private volatile Candidates candidates;
+
+	// where MrX could be for the current search, with the running total of their weights
+	private static final class Candidates {
+		final int[] stations;
+		final double[] total;
+
+		Candidates(int[] stations, double[] total) {
+			this.stations = stations;
+			this.total = total;
+		}
+	}
+
+	/**
+	 * Searches on all processors
+	 */
+	public DetectiveMctsAi() { super(); }
+
+	/**
+	 * @param threads the number of search threads
+	 */
+	public DetectiveMctsAi(int threads) {
+		super(threads, EXPLORATION, Rollout.RANDOM, Evaluator.WINNER);
+	}
+
+	@Nonnull @Override public String name() { return "ISMCTS detectives"; }
+
+	@Override public synchronized void onStart() {
+		if (tracker != null) tracker.reset();
+	}
+
+	@Override protected synchronized void prepare(@Nonnull Board board) {
+		if (tracker == null || !board.getSetup().equals(trackedSetup)) {
+			trackedSetup = board.getSetup();
+			tracker = new MrXLocationTracker(trackedSetup);
+		}
+		tracker.update(board);
+		var possible = tracker.candidates();
+		if (Bitboard.isEmpty(possible)) {
+			// the log contradicts the usual starts, so he could be anywhere no detective is
+			var graph = trackedSetup.compactGraph();
+			for (int node = 0; node <= graph.maxNode(); node++)
+				if (graph.contains(node)) Bitboard.set(possible, node);
+			for (Piece piece : board.getPlayers()) {
+				if (piece.isDetective())
+					board.getDetectiveLocation((Detective) piece)
+							.ifPresent(location -> Bitboard.clear(possible, location));
+			}
+		}
+		var stations = new int[Bitboard.cardinality(possible)];
+		var total = new double[stations.length];
+		double sum = 0;
+		for (int i = 0, node = Bitboard.nextSetBit(possible, 0); node >= 0;
+		     i++, node = Bitboard.nextSetBit(possible, node + 1)) {
+			stations[i] = node;
+			double paths = tracker.pathCount(node);
+			// stations of the fallback have no paths, so each counts once
+			sum += paths > 0 ? paths : 1;
+			total[i] = sum;
+		}
+		this.candidates = new Candidates(stations, total);
+	}
+
+	@Nonnull @Override protected Determinizer determinizer(@Nonnull Board board) {
+		var current = candidates;
+		var stations = current.stations;
+		var total = current.total;
+		// each thread makes the state of a station the first time it samples it
+		var states = new SearchState[stations.length];
+		return (Random random) -> {
+			int i = Arrays.binarySearch(total, random.nextDouble() * total[total.length - 1]);
+			if (i < 0) i = -i - 1;
+			i = Math.min(i, stations.length - 1);
+			if (states[i] == null) states[i] = SearchState.of(board, stations[i]);
+			return states[i];
+		};
+	}
+}
@@ -0,0 +1,572 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.IntMove;
+import uk.ac.bris.cs.scotlandyard.model.IntMoveList;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+
+/**
+ * A base for AIs that pick moves with Monte Carlo tree search: UCT with a pluggable
+ * {@link Rollout} and {@link Evaluator}, run tree-parallel on a number of threads.
+ * <br>
+ * Subclasses say what to search with {@link #determinizer(Board)}. A perfect information search,
+ * e.g MrX's, gives the same position in every iteration. An information set search, e.g the
+ * detectives', gives a position sampled from what could be true in every iteration; the tree
+ * keeps one node per move seen in any sample, so statistics are shared between samples, and
+ * children are chosen among the moves legal in the current sample, weighted by how often each was
+ * available rather than by the visits of the parent.
+ * <br>
+ * All threads share one tree and take no locks: children are published with a compare-and-set
+ * and the statistics of a node are atomic counters. A thread passing through a node adds
+ * {@link #VIRTUAL_LOSS} visits at once and only adds the reward on the way back, so until then
+ * the branch looks worse to the other threads and they spread out. Rewards are MrX's chance of
+ * winning in [0, 1]; each node scores them for the side whose move led to it, MrX or the
+ * detectives as a team.
+ * <br>
+ * A search stops a safety margin before the deadline given to {@link #pickMove(Board, Deadline)},
+ * or as soon as the deadline is cancelled, and plays the most visited move. While it runs, the
+ * most visited move is offered to the deadline every {@code 100ms}.
+ * <br>
+ * A perfect information tree is kept after each search. If the next search is of a position
+ * reached by one move from the last, e.g the one the AI played or the opponent's move it was
+ * pondering on, the subtree of that move is searched on rather than a new tree. AIs ponder with
+ * {@link #ponder(Board, Deadline)} on the opponent's turn, which searches the opponent's moves
+ * until the real one is made; an information set search doesn't ponder, as it can't tell which of
+ * its children the move made was.
+ */
+public abstract class MctsAi implements Ai {
+
+	/**
+	 * The visits a thread adds to every node on its path before it knows the result
+	 */
+	public static final int VIRTUAL_LOSS = 3;
+	/**
+	 * The default exploration constant of UCT, for rewards in [0, 1]
+	 */
+	public static final double EXPLORATION = Math.sqrt(2);
+
+	// at most this much of the budget is kept back for returning the move in time
+	private static final long MAX_MARGIN = TimeUnit.MILLISECONDS.toNanos(500);
+	// how often the most visited move is offered to the deadline while the threads search
+	private static final long OFFER_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * Plays a position on after it was reached through the tree
+	 */
+	@FunctionalInterface public interface Rollout {
+		/**
+		 * Plays uniformly random moves until the game ends
+		 */
+		Rollout RANDOM = (state, random) -> {
+			for (var move = state.randomMove(random); move.isPresent();
+			     move = state.randomMove(random))
+				state.apply(move.get());
+		};
+
+		/**
+		 * @param state the position to play on in place; the search takes the moves back
+		 * @param random the source of randomness of the search thread
+		 */
+		void play(@Nonnull SearchState state, @Nonnull Random random);
+	}
+
+	/**
+	 * Scores a position at the end of a rollout
+	 */
+	@FunctionalInterface public interface Evaluator {
+		/**
+		 * Scores games by who won, and unfinished games as a draw
+		 */
+		Evaluator WINNER = state -> {
+			switch (state.winner()) {
+				case MRX: return 1;
+				case DETECTIVES: return 0;
+				default: return 0.5;
+			}
+		};
+
+		/**
+		 * @param state the position
+		 * @return MrX's reward in [0, 1], 1 being a win for MrX
+		 */
+		double evaluate(@Nonnull SearchState state);
+	}
+
+	/**
+	 * The positions one search thread searches
+	 */
+	@FunctionalInterface public interface Determinizer {
+		/**
+		 * @param root the position
+		 * @return a determinizer of a perfect information search, giving the position every time
+		 */
+		@Nonnull static Determinizer of(@Nonnull SearchState root) {
+			return new Determinizer() {
+				@Nonnull @Override public SearchState sample(@Nonnull Random random) { return root; }
+				@Override public boolean isFixed() { return true; }
+			};
+		}
+
+		/**
+		 * @param random the source of randomness of the search thread
+		 * @return the position to search in the next iteration; the thread makes its moves on it
+		 * and takes them all back before asking for the next one
+		 */
+		@Nonnull SearchState sample(@Nonnull Random random);
+
+		/**
+		 * @return whether every sample is the same position, so the search can skip checking
+		 * which moves are legal in each
+		 */
+		default boolean isFixed() { return false; }
+	}
+
+	private final int threads;
+	private final double exploration;
+	private final Rollout rollout;
+	private final Evaluator evaluator;
+	private ExecutorService executor;
+	private volatile long iterations;
+	private volatile long nanos;
+	private volatile long reused;
+
+	// held for a whole search, so a pondering search ends before the next one starts
+	private final Object searching = new Object();
+	// the tree of the last perfect information search and the position at its root
+	private Node warmRoot;
+	private SearchState warmState;
+	private volatile Deadline pondering;
+	private final AtomicInteger ponderHits = new AtomicInteger();
+	private final AtomicInteger ponderMisses = new AtomicInteger();
+
+	/**
+	 * Searches with random rollouts scored by the winner, on all processors
+	 */
+	protected MctsAi() {
+		this(Runtime.getRuntime().availableProcessors(), EXPLORATION, Rollout.RANDOM,
+				Evaluator.WINNER);
+	}
+
+	/**
+	 * @param threads the number of search threads
+	 * @param exploration the exploration constant of UCT
+	 * @param rollout how to play positions on
+	 * @param evaluator how to score positions after the rollout
+	 * @throws IllegalArgumentException if there are no threads or the exploration is negative
+	 */
+	protected MctsAi(int threads,
+	                 double exploration,
+	                 @Nonnull Rollout rollout,
+	                 @Nonnull Evaluator evaluator) {
+		if (threads < 1) throw new IllegalArgumentException("Bad thread count: " + threads);
+		if (!(exploration >= 0)) throw new IllegalArgumentException("Bad exploration: " + exploration);
+		this.threads = threads;
+		this.exploration = exploration;
+		this.rollout = rollout;
+		this.evaluator = evaluator;
+	}
+
+	/**
+	 * Called by each search thread at the start of a search, and once more by the thread that
+	 * started the search. When pondering, the board is the one the opponent is to move on.
+	 *
+	 * @param board the board to pick a move on
+	 * @return the positions the calling thread searches; only that thread uses them
+	 */
+	@Nonnull protected abstract Determinizer determinizer(@Nonnull Board board);
+
+	/**
+	 * Called before each search, within its time budget, e.g to update what is known about the
+	 * game from the board. Defaults to no-op.
+	 *
+	 * @param board the board to pick a move on
+	 */
+	protected void prepare(@Nonnull Board board) {}
+
+	/**
+	 * @return the number of iterations of the last search for a move
+	 */
+	public long iterations() { return iterations; }
+
+	/**
+	 * @return the iterations per second of the last search, over all threads
+	 */
+	public double iterationsPerSecond() {
+		long time = nanos;
+		return time == 0 ? 0 : iterations * 1e9 / time;
+	}
+
+	/**
+	 * @return the visits the root of the last search for a move already had from earlier
+	 * searches, pondering included; 0 if it started from a new tree
+	 */
+	public long reusedVisits() { return reused; }
+
+	/**
+	 * @return the number of ponders where the move made was the most visited one
+	 */
+	public int ponderHits() { return ponderHits.get(); }
+
+	/**
+	 * @return the number of ponders where the move made was not the most visited one
+	 */
+	public int ponderMisses() { return ponderMisses.get(); }
+
+	@Override public String toString() {
+		return String.format("%s: %d iterations, %.0f/s", name(), iterations, iterationsPerSecond());
+	}
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board,
+	                                        Pair<Long, TimeUnit> timeoutPair) {
+		return pickMove(board, Deadline.of(timeoutPair));
+	}
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board, @Nonnull Deadline deadline) {
+		synchronized (searching) {
+			long start = System.nanoTime();
+			long budget = Math.max(0, deadline.nanoTime() - start);
+			long margin = Math.min(budget / 10, MAX_MARGIN);
+			prepare(board);
+			return search(board, deadline, false, start,
+					start + budget - margin, start + budget - margin * 3 / 4);
+		}
+	}
+
+	@Override public void ponder(@Nonnull Board board, @Nonnull Deadline deadline) {
+		synchronized (searching) {
+			if (deadline.isExpired()) return;
+			pondering = deadline;
+			try {
+				long start = System.nanoTime();
+				prepare(board);
+				search(board, deadline, true, start, deadline.nanoTime(), deadline.nanoTime());
+			} finally {
+				pondering = null;
+			}
+		}
+	}
+
+	@Override public void onPonderResult(boolean hit) {
+		(hit ? ponderHits : ponderMisses).incrementAndGet();
+	}
+
+	@Override public synchronized void onTerminate() {
+		var current = pondering;
+		if (current != null) current.cancel();
+		if (executor != null) executor.shutdownNow();
+		executor = null;
+	}
+
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+					.setNameFormat("mcts-thread-%d")
+					.setDaemon(true)
+					.build());
+		}
+		return executor;
+	}
+
+	private Move search(Board board, Deadline token, boolean ponder,
+	                    long start, long deadline, long hardDeadline) {
+		var moves = board.getAvailableMoves();
+		if (moves.isEmpty() && !ponder) throw new IllegalArgumentException("No moves to pick from");
+		var determinizer = determinizer(board);
+		var position = determinizer.isFixed()
+				? determinizer.sample(ThreadLocalRandom.current())
+				: null;
+		if (ponder && position == null) return null;
+		if (moves.isEmpty()) {
+			// pondering on MrX's turn, whose moves are hidden, those of the position stand in
+			var predicted = new ArrayList<Move>();
+			position.addMoves(predicted);
+			if (predicted.isEmpty()) return null;
+			moves = ImmutableSet.copyOf(predicted);
+		}
+		var root = reuse(position);
+		if (!ponder) reused = root.visits;
+		warmRoot = position == null ? null : root;
+		warmState = position;
+		var stop = new AtomicBoolean();
+		var count = new LongAdder();
+		var tasks = new ArrayList<Future<?>>(threads);
+		for (int i = 0; i < threads; i++)
+			tasks.add(executor().submit(() -> iterate(root, board, token, deadline, stop, count)));
+		try {
+			// threads finish their last iteration past the deadline, which may take until the hard one
+			waiting:
+			for (var task : tasks) {
+				while (true) {
+					long left = hardDeadline - System.nanoTime();
+					if (left <= 0 || token.isCancelled()) break waiting;
+					try {
+						task.get(Math.min(left, OFFER_INTERVAL), TimeUnit.NANOSECONDS);
+						break;
+					} catch (TimeoutException e) {
+						token.offer(mostVisited(moves, root));
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		} finally {
+			stop.set(true);
+		}
+		if (!ponder) {
+			iterations = count.sum();
+			nanos = System.nanoTime() - start;
+		}
+		var best = mostVisited(moves, root);
+		token.offer(best);
+		return best;
+	}
+
+	// the kept tree if it is of the position, or the subtree of the move leading to it
+	private Node reuse(SearchState position) {
+		var root = warmRoot;
+		var state = warmState;
+		warmRoot = null;
+		warmState = null;
+		if (position == null || root == null) return new Node(IntMove.NONE);
+		long key = position.positionKey();
+		if (state.positionKey() == key) return root;
+		var children = root.children;
+		if (children != null) {
+			for (Node child : children) {
+				state.apply(child.move);
+				boolean reached = state.positionKey() == key;
+				state.undo();
+				if (reached) return child;
+			}
+		}
+		return new Node(IntMove.NONE);
+	}
+
+	private static Move mostVisited(Set<Move> moves, Node root) {
+		Move best = null;
+		int most = -1;
+		for (Move move : moves) {
+			var child = find(root.children, IntMove.of(move));
+			int visits = child == null ? 0 : child.visits;
+			if (visits > most) {
+				best = move;
+				most = visits;
+			}
+		}
+		return best;
+	}
+
+	private void iterate(Node root, Board board, Deadline token, long deadline,
+	                     AtomicBoolean stop, LongAdder count) {
+		var determinizer = determinizer(board);
+		boolean fixed = determinizer.isFixed();
+		Random random = ThreadLocalRandom.current();
+		var path = new Node[64];
+		var legal = new IntMoveList[64];
+		while (!stop.get() && !token.isCancelled() && System.nanoTime() - deadline < 0) {
+			var state = determinizer.sample(random);
+			var node = root;
+			int length = 0;
+			path[length++] = root;
+			root.visit(VIRTUAL_LOSS);
+			while (true) {
+				if (length == path.length) {
+					path = Arrays.copyOf(path, length * 2);
+					legal = Arrays.copyOf(legal, length * 2);
+				}
+				var children = node.children;
+				IntMoveList moves = null;
+				if (!fixed || children == null) {
+					if (legal[length] == null) legal[length] = new IntMoveList();
+					moves = legal[length];
+					moves.clear();
+					moves.addAll(state);
+					moves.sort();
+					// moves of other samples don't count if this one has none
+					if (moves.isEmpty() && !fixed) break;
+					children = expand(node, moves);
+				}
+				if (children.length == 0) break;
+				var child = fixed
+						? select(children, node.visits)
+						: select(children, moves);
+				state.apply(child.move);
+				path[length++] = child;
+				node = child;
+				// a new node is scored with a rollout from it
+				if (child.visit(VIRTUAL_LOSS) == 0) break;
+			}
+			rollout.play(state, random);
+			double reward = evaluator.evaluate(state);
+			while (state.depth() > 0) state.undo();
+			root.update(0, VIRTUAL_LOSS);
+			for (int i = 1; i < length; i++)
+				path[i].update(path[i].mrX ? reward : 1 - reward, VIRTUAL_LOSS);
+			count.increment();
+		}
+	}
+
+	// the children of a node are sorted by move, so those of each sample can be merged in
+	private static Node[] expand(Node node, IntMoveList moves) {
+		while (true) {
+			var children = node.children;
+			var present = children == null ? Node.NONE : children;
+			int missing = 0;
+			for (int i = 0, j = 0; i < moves.size(); i++) {
+				while (j < present.length && present[j].move < moves.get(i)) j++;
+				if (j == present.length || present[j].move != moves.get(i)) missing++;
+			}
+			if (missing == 0 && children != null) return children;
+			var merged = new Node[present.length + missing];
+			for (int i = 0, j = 0, k = 0; k < merged.length; k++) {
+				if (i < moves.size() && (j == present.length || moves.get(i) < present[j].move)) {
+					merged[k] = new Node(moves.get(i++));
+				} else {
+					if (i < moves.size() && moves.get(i) == present[j].move) i++;
+					merged[k] = present[j++];
+				}
+			}
+			if (node.publish(children, merged)) return merged;
+		}
+	}
+
+	private static Node find(Node[] children, int move) {
+		if (children == null) return null;
+		int low = 0, high = children.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = children[middle].move;
+			if (current < move) low = middle + 1;
+			else if (current > move) high = middle - 1;
+			else return children[middle];
+		}
+		return null;
+	}
+
+	private double ucb(Node child, int visits, double logParent) {
+		return child.score / (Node.SCALE * visits) + exploration * Math.sqrt(logParent / visits);
+	}
+
+	// every child is legal in every sample, so the parent's visits are each one's availability
+	private Node select(Node[] children, int parentVisits) {
+		double logParent = Math.log(Math.max(parentVisits, 1));
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (Node child : children) {
+			int visits = child.visits;
+			if (visits == 0) return child;
+			double value = ucb(child, visits, logParent);
+			if (value > bestValue) {
+				best = child;
+				bestValue = value;
+			}
+		}
+		return best;
+	}
+
+	// only the children legal in this sample take part, and each counts as available once more
+	private Node select(Node[] children, IntMoveList moves) {
+		Node unvisited = null;
+		int legal = 0;
+		// the list is done with, so it keeps the indices of the legal children instead
+		for (int i = 0, j = 0; i < moves.size(); i++) {
+			while (children[j].move != moves.get(i)) j++;
+			children[j].available();
+			if (unvisited == null && children[j].visits == 0) unvisited = children[j];
+			moves.set(legal++, j);
+		}
+		if (unvisited != null) return unvisited;
+		Node best = null;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < legal; i++) {
+			var child = children[moves.get(i)];
+			int visits = child.visits;
+			if (visits == 0) return child;
+			double value = ucb(child, visits, Math.log(Math.max(child.available, 1)));
+			if (value > bestValue) {
+				best = child;
+				bestValue = value;
+			}
+		}
+		return best;
+	}
+
+	private static final class Node {
+		static final Node[] NONE = new Node[0];
+		// rewards are summed in fixed point
+		static final double SCALE = 1 << 20;
+
+		private static final VarHandle VISITS;
+		private static final VarHandle SCORE;
+		private static final VarHandle AVAILABLE;
+		private static final VarHandle CHILDREN;
+
+		static {
+			try {
+				var lookup = MethodHandles.lookup();
+				VISITS = lookup.findVarHandle(Node.class, "visits", int.class);
+				SCORE = lookup.findVarHandle(Node.class, "score", long.class);
+				AVAILABLE = lookup.findVarHandle(Node.class, "available", int.class);
+				CHILDREN = lookup.findVarHandle(Node.class, "children", Node[].class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		final int move;
+		// whether MrX made the move leading here, as the score is for whoever did
+		final boolean mrX;
+		volatile int visits;
+		volatile long score;
+		volatile int available;
+		// sorted by move; null until expanded
+		volatile Node[] children;
+
+		Node(int move) {
+			this.move = move;
+			this.mrX = move != IntMove.NONE && IntMove.piece(move).isMrX();
+		}
+
+		int visit(int count) { return (int) VISITS.getAndAdd(this, count); }
+
+		void available() { AVAILABLE.getAndAdd(this, 1); }
+
+		// the result of one iteration, which counts as one visit of the virtual ones
+		void update(double reward, int virtual) {
+			SCORE.getAndAdd(this, Math.round(reward * SCALE));
+			VISITS.getAndAdd(this, 1 - virtual);
+		}
+
+		boolean publish(Node[] expected, Node[] children) {
+			return CHILDREN.compareAndSet(this, expected, children);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.CompactGraph;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.Model;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Keeps track of the stations MrX could be at, as the detectives see it.
+ * <br>
+ * Register the tracker with {@link Model#registerObserver(Model.Observer)}, or call
+ * {@link #update(Board)} with every board an AI is given. Each update only reads the travel log
+ * entries added since the last one: a hidden entry moves every candidate along the edges its
+ * ticket pays for ({@link Ticket#SECRET} pays for any edge), a revealed entry leaves only the
+ * revealed station, and the stations detectives are at are removed after every update.
+ * <br>
+ * Next to the candidates the tracker counts, per station, the number of paths consistent with the
+ * log that end there, for weighting the candidates. Counts grow exponentially with hidden rounds,
+ * so they are kept as doubles. All methods are synchronized, so the tracker can be updated by the
+ * game and read by an AI thread.
+ */
+public final class MrXLocationTracker implements Model.Observer {
+
+	private final CompactGraph graph;
+	private final long[] start;
+	private long[] candidates;
+	private double[] paths;
+	private double[] spare;
+	private int entries;
+
+	/**
+	 * Creates a tracker for a game where MrX starts at one of {@link ScotlandYard#MRX_LOCATIONS}
+	 *
+	 * @param setup the game setup
+	 */
+	public MrXLocationTracker(@Nonnull GameSetup setup) {
+		this(setup.compactGraph(), ScotlandYard.MRX_LOCATIONS);
+	}
+
+	/**
+	 * @param graph the graph of the game
+	 * @param starts the stations MrX may start at
+	 * @throws IllegalArgumentException if a start isn't on the graph
+	 */
+	public MrXLocationTracker(@Nonnull CompactGraph graph, @Nonnull Collection<Integer> starts) {
+		this.graph = graph;
+		this.start = Bitboard.empty(graph.maxNode());
+		for (int location : starts) {
+			if (!graph.contains(location))
+				throw new IllegalArgumentException("Start not on the graph: " + location);
+			Bitboard.set(start, location);
+		}
+		reset();
+	}
+
+	/**
+	 * Forgets the travel log, e.g for a new game on the same graph
+	 */
+	public synchronized void reset() {
+		candidates = start.clone();
+		paths = new double[graph.maxNode() + 1];
+		spare = new double[graph.maxNode() + 1];
+		for (int node = Bitboard.nextSetBit(start, 0); node >= 0;
+		     node = Bitboard.nextSetBit(start, node + 1)) paths[node] = 1;
+		entries = 0;
+	}
+
+	@Override public void onModelChanged(@Nonnull Board board, @Nonnull Event event) {
+		update(board);
+	}
+
+	/**
+	 * Catches up with the board's travel log and detective locations
+	 *
+	 * @param board the board
+	 */
+	public synchronized void update(@Nonnull Board board) {
+		var log = board.getMrXTravelLog();
+		// a shorter log than already seen means a different game
+		if (log.size() < entries) reset();
+		var detectives = Bitboard.empty(graph.maxNode());
+		for (Piece piece : board.getPlayers()) {
+			if (piece.isDetective())
+				board.getDetectiveLocation((Detective) piece).ifPresent(location -> {
+					if (graph.contains(location)) Bitboard.set(detectives, location);
+				});
+		}
+		for (; entries < log.size(); entries++) advance(log.get(entries));
+		// only the current locations are known to be free of MrX: the detectives may have moved
+		// since the entries were logged
+		remove(detectives);
+	}
+
+	private void advance(LogEntry entry) {
+		int mask = mask(entry.ticket());
+		var next = spare;
+		Arrays.fill(next, 0);
+		var reached = Bitboard.empty(graph.maxNode());
+		for (int node = Bitboard.nextSetBit(candidates, 0); node >= 0;
+		     node = Bitboard.nextSetBit(candidates, node + 1)) {
+			for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+				if ((graph.transports(edge) & mask) == 0) continue;
+				int target = graph.target(edge);
+				next[target] += paths[node];
+				Bitboard.set(reached, target);
+			}
+		}
+		spare = paths;
+		paths = next;
+		candidates = reached;
+		entry.location().ifPresent(this::reveal);
+	}
+
+	private void reveal(int location) {
+		double count = location >= 0 && location < paths.length ? paths[location] : 0;
+		Arrays.fill(candidates, 0);
+		Arrays.fill(paths, 0);
+		if (!graph.contains(location)) return;
+		Bitboard.set(candidates, location);
+		// the paths that agree with the reveal, or a fresh start if the log didn't allow any
+		paths[location] = count > 0 ? count : 1;
+	}
+
+	private static int mask(Ticket ticket) {
+		int mask = 0;
+		for (Transport transport : Transport.values()) {
+			if (ticket == Ticket.SECRET || transport.requiredTicket() == ticket)
+				mask |= CompactGraph.bit(transport);
+		}
+		return mask;
+	}
+
+	private void remove(long[] detectives) {
+		for (int node = Bitboard.nextSetBit(detectives, 0); node >= 0;
+		     node = Bitboard.nextSetBit(detectives, node + 1)) {
+			Bitboard.clear(candidates, node);
+			paths[node] = 0;
+		}
+	}
+
+	/**
+	 * @return a copy of the stations MrX could be at; empty if the log contradicts the starts
+	 */
+	@Nonnull public synchronized long[] candidates() { return candidates.clone(); }
+
+	/**
+	 * @return the number of stations MrX could be at
+	 */
+	public synchronized int size() { return Bitboard.cardinality(candidates); }
+
+	/**
+	 * @param location the station
+	 * @return whether MrX could be at the station
+	 */
+	public synchronized boolean contains(int location) {
+		return location >= 0 && location < paths.length && Bitboard.contains(candidates, location);
+	}
+
+	/**
+	 * @param location the station
+	 * @return the number of paths consistent with the travel log that end at the station
+	 */
+	public synchronized double pathCount(int location) {
+		return location >= 0 && location < paths.length ? paths[location] : 0;
+	}
+
+	/**
+	 * @param location the station
+	 * @return the chance of MrX being at the station if every consistent path is equally likely
+	 */
+	public synchronized double probability(int location) {
+		double total = 0;
+		for (double count : paths) total += count;
+		return total == 0 ? 0 : pathCount(location) / total;
+	}
+
+	/**
+	 * @return the number of travel log entries taken into account
+	 */
+	public synchronized int entries() { return entries; }
+}
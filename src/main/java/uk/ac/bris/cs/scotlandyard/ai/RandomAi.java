@@ -0,0 +1,35 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+
+/**
+ * Picks uniformly at random from the available moves; a baseline for other AIs to beat
+ */
+public final class RandomAi implements Ai {
+
+	private final Random random;
+
+	public RandomAi() { this(new Random()); }
+
+	/**
+	 * @param random the source of randomness, e.g seeded for repeatable games
+	 */
+	public RandomAi(@Nonnull Random random) { this.random = random; }
+
+	@Nonnull @Override public String name() { return "Random"; }
+
+	@Nonnull @Override public Move pickMove(@Nonnull Board board,
+	                                        Pair<Long, TimeUnit> timeoutPair) {
+		return MoveGenerator.of(board).randomMove(random)
+				.orElseThrow(() -> new IllegalArgumentException("No moves to pick from"));
+	}
+}
@@ -0,0 +1,171 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.CompactGraph;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * The stations a detective can reach within a number of moves, taking their remaining taxi, bus
+ * and underground tickets into account.
+ * <br>
+ * The search expands one frontier {@link Bitboard} per combination of tickets used so far, along
+ * the per-transport neighbour bitboards of the {@link CompactGraph}, so a frontier costs one OR per
+ * station rather than one per edge. Ticket counts above the horizon can never run out within it,
+ * so they are clamped to the horizon; results are memoized by location, clamped counts, horizon
+ * and kind, which keeps the cache small and the hit rate high. Secret and double tickets, which
+ * detectives don't hold, are ignored.
+ * <br>
+ * Instances are safe to share between threads. Returned bitboards are shared with the cache and
+ * must not be modified; copy them with {@code clone()} first.
+ */
+public final class Reachability {
+
+	/**
+	 * The largest horizon that can be asked for
+	 */
+	public static final int MAX_HORIZON = 0xFF;
+
+	private static final int TAXI = Transport.TAXI.ordinal();
+	private static final int BUS = Transport.BUS.ordinal();
+	private static final int UNDERGROUND = Transport.UNDERGROUND.ordinal();
+
+	private final CompactGraph graph;
+	private final Map<Long, long[]> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * @param graph the graph to move on, e.g {@link uk.ac.bris.cs.scotlandyard.model.GameSetup#compactGraph()}
+	 */
+	public Reachability(@Nonnull CompactGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @param player the detective
+	 * @param k the number of moves
+	 * @return the stations where the player can be after exactly k moves; empty if they don't
+	 * have the tickets for k moves
+	 */
+	@Nonnull public long[] exactly(@Nonnull Player player, int k) {
+		return reachable(player, k, true);
+	}
+
+	/**
+	 * @param player the detective
+	 * @param k the number of moves
+	 * @return the stations where the player can be after at most k moves, including where they
+	 * are now
+	 */
+	@Nonnull public long[] atMost(@Nonnull Player player, int k) {
+		return reachable(player, k, false);
+	}
+
+	private long[] reachable(Player player, int k, boolean exactly) {
+		return reachable(player.location(), player.count(Ticket.TAXI), player.count(Ticket.BUS),
+				player.count(Ticket.UNDERGROUND), k, exactly);
+	}
+
+	/**
+	 * @param location the station to start from
+	 * @param taxi the number of taxi tickets
+	 * @param bus the number of bus tickets
+	 * @param underground the number of underground tickets
+	 * @param k the number of moves
+	 * @param exactly whether to return the stations reachable in exactly k moves rather than in at
+	 * most k moves
+	 * @return the reachable stations
+	 * @throws IllegalArgumentException if the location isn't on the graph, a ticket count is
+	 * negative or k is outside [0, {@link #MAX_HORIZON}]
+	 */
+	@Nonnull public long[] reachable(int location, int taxi, int bus, int underground,
+	                                 int k, boolean exactly) {
+		if (!graph.contains(location))
+			throw new IllegalArgumentException("Location not on the graph: " + location);
+		if (taxi < 0 || bus < 0 || underground < 0)
+			throw new IllegalArgumentException("Negative ticket count");
+		if (k < 0 || k > MAX_HORIZON) throw new IllegalArgumentException("Bad horizon: " + k);
+		int t = Math.min(taxi, k), b = Math.min(bus, k), u = Math.min(underground, k);
+		long key = (long) location << 33 | (exactly ? 1L << 32 : 0)
+				| (long) t << 24 | b << 16 | u << 8 | k;
+		// computeIfAbsent would hold a bin lock for the whole search; racing threads computing the
+		// same set is cheaper than blocking
+		var cached = cache.get(key);
+		if (cached != null) return cached;
+		var board = search(location, t, b, u, k, exactly);
+		var previous = cache.putIfAbsent(key, board);
+		return previous != null ? previous : board;
+	}
+
+	private long[] search(int location, int taxi, int bus, int underground,
+	                      int k, boolean exactly) {
+		int width = k + 1;
+		// frontier[used taxi * width + used bus], the underground tickets used being step - both
+		var frontier = new long[width * width][];
+		frontier[0] = Bitboard.empty(graph.maxNode());
+		Bitboard.set(frontier[0], location);
+		var result = exactly ? null : frontier[0].clone();
+		for (int step = 0; step < k; step++) {
+			var next = new long[width * width][];
+			boolean any = false;
+			for (int usedTaxi = 0; usedTaxi <= Math.min(step, taxi); usedTaxi++) {
+				for (int usedBus = 0; usedBus <= Math.min(step - usedTaxi, bus); usedBus++) {
+					var from = frontier[usedTaxi * width + usedBus];
+					if (from == null) continue;
+					int usedUnderground = step - usedTaxi - usedBus;
+					if (usedTaxi < taxi)
+						any |= expand(from, TAXI, next, (usedTaxi + 1) * width + usedBus);
+					if (usedBus < bus)
+						any |= expand(from, BUS, next, usedTaxi * width + usedBus + 1);
+					if (usedUnderground < underground)
+						any |= expand(from, UNDERGROUND, next, usedTaxi * width + usedBus);
+				}
+			}
+			frontier = next;
+			if (!any) return result != null ? result : Bitboard.empty(graph.maxNode());
+			if (!exactly) union(result, frontier);
+		}
+		if (exactly) {
+			result = Bitboard.empty(graph.maxNode());
+			union(result, frontier);
+		}
+		return result;
+	}
+
+	private boolean expand(long[] from, int transport, long[][] next, int index) {
+		var to = next[index];
+		if (to == null) next[index] = to = Bitboard.empty(graph.maxNode());
+		boolean any = false;
+		for (int node = Bitboard.nextSetBit(from, 0); node >= 0;
+		     node = Bitboard.nextSetBit(from, node + 1)) {
+			for (int word = 0; word < to.length; word++) {
+				long bits = graph.neighbours(node, transport, word);
+				to[word] |= bits;
+				any |= bits != 0;
+			}
+		}
+		return any;
+	}
+
+	private static void union(long[] into, long[][] boards) {
+		for (long[] board : boards) {
+			if (board == null) continue;
+			for (int word = 0; word < into.length; word++) into[word] |= board[word];
+		}
+	}
+
+	/**
+	 * @return the number of memoized results
+	 */
+	public int cacheSize() { return cache.size(); }
+
+	/**
+	 * Forgets all memoized results
+	 */
+	public void clear() { cache.clear(); }
+}
@@ -0,0 +1,212 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.IntMove;
+import uk.ac.bris.cs.scotlandyard.model.Zobrist;
+
+/**
+ * A fixed size transposition table for game tree searches, keyed by position keys such as
+ * {@link uk.ac.bris.cs.scotlandyard.model.Board.GameState#positionKey()} (see {@link Zobrist}).
+ * <br>
+ * Entries live in one long array, two longs each: the key XOR-ed with the data, then the data.
+ * The data packs, from the least significant bit, the best move ({@link IntMove}, 32 bits), the
+ * score (16 bits, signed), the depth (8 bits), the {@link Bound} (2 bits) and the search age
+ * (6 bits). Entries are grouped in buckets of two: the first slot keeps the deepest or most
+ * recent result for its key, the second is always replaced by whatever doesn't fit the first.
+ * <br>
+ * The table takes no locks, so any number of search threads can probe and store at the same
+ * time. Two threads writing the same entry at once may leave it torn, but a torn entry no longer
+ * satisfies the XOR check against its key and simply reads as a miss.
+ */
+public final class TranspositionTable {
+
+	/**
+	 * How a stored score relates to the true score of the position
+	 */
+	public enum Bound {
+		/**
+		 * The search failed high; the true score is at least the stored one
+		 */
+		LOWER,
+		/**
+		 * The search failed low; the true score is at most the stored one
+		 */
+		UPPER,
+		/**
+		 * The stored score is the true score
+		 */
+		EXACT
+	}
+
+	/**
+	 * What {@link #probe(long)} returns when the table has no entry for the key; never valid data
+	 */
+	public static final long MISS = 0;
+	/**
+	 * The smallest score that can be stored
+	 */
+	public static final int MIN_SCORE = Short.MIN_VALUE;
+	/**
+	 * The largest score that can be stored
+	 */
+	public static final int MAX_SCORE = Short.MAX_VALUE;
+	/**
+	 * The largest depth that can be stored
+	 */
+	public static final int MAX_DEPTH = 0xFF;
+
+	private static final Bound[] BOUNDS = Bound.values();
+	private static final int SCORE_SHIFT = 32;
+	private static final int DEPTH_SHIFT = 48;
+	private static final int BOUND_SHIFT = 56;
+	private static final int AGE_SHIFT = 58;
+	private static final int AGES = 1 << 6;
+	// longs per bucket: two slots of (key ^ data, data)
+	private static final int BUCKET = 4;
+	private static final int BYTES_PER_BUCKET = BUCKET * Long.BYTES;
+
+	private final long[] table;
+	private final int mask;
+	private volatile int age;
+
+	/**
+	 * @param megabytes the memory to use, rounded down to a power of two number of buckets
+	 * @throws IllegalArgumentException if less than one megabyte is asked for
+	 */
+	public TranspositionTable(int megabytes) {
+		if (megabytes < 1) throw new IllegalArgumentException("Table too small: " + megabytes + "MB");
+		long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BYTES_PER_BUCKET);
+		// an array can't hold more than Integer.MAX_VALUE longs
+		buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET));
+		this.table = new long[(int) buckets * BUCKET];
+		this.mask = (int) buckets - 1;
+	}
+
+	/**
+	 * @return the number of entries the table can hold
+	 */
+	public int capacity() { return (mask + 1) * 2; }
+
+	private int bucket(long key) {
+		// the low bits pick the bucket; mixing guards against keys that don't spread them
+		return ((int) (key ^ (key >>> 32)) & mask) * BUCKET;
+	}
+
+	/**
+	 * @param key the position key
+	 * @return the packed data stored for the key, or {@link #MISS}; unpack it with
+	 * {@link #move(long)}, {@link #score(long)}, {@link #depth(long)} and {@link #bound(long)}
+	 */
+	public long probe(long key) {
+		int bucket = bucket(key);
+		for (int slot = bucket; slot < bucket + BUCKET; slot += 2) {
+			long data = table[slot + 1];
+			if ((table[slot] ^ data) == key && data != MISS) return data;
+		}
+		return MISS;
+	}
+
+	/**
+	 * Stores a search result, unless the table holds a more valuable one for the same bucket
+	 *
+	 * @param key the position key
+	 * @param move the best move found, encoded with {@link IntMove}, or {@link IntMove#NONE};
+	 * storing no move keeps the move already stored for the key
+	 * @param score the score, clamped to [{@link #MIN_SCORE}, {@link #MAX_SCORE}]
+	 * @param depth the depth searched, clamped to [0, {@link #MAX_DEPTH}]
+	 * @param bound how the score relates to the true score
+	 */
+	public void store(long key, int move, int score, int depth, @Nonnull Bound bound) {
+		int bucket = bucket(key);
+		int current = age;
+		long first = table[bucket + 1];
+		boolean firstMatches = (table[bucket] ^ first) == key && first != MISS;
+		long second = table[bucket + 3];
+		boolean secondMatches = (table[bucket + 2] ^ second) == key && second != MISS;
+		if (move == IntMove.NONE) {
+			if (firstMatches) move = move(first);
+			else if (secondMatches) move = move(second);
+		}
+		long data = pack(move, score, depth, bound, current);
+		// the depth-preferred slot takes the result if it is worth at least as much as what's there
+		if (first == MISS || firstMatches || age(first) != current || depth >= depth(first)) {
+			write(bucket, key, data);
+			// don't leave an older copy of the same position behind in the other slot
+			if (secondMatches && !firstMatches) write(bucket + 2, 0, MISS);
+		} else write(bucket + 2, key, data);
+	}
+
+	private void write(int slot, long key, long data) {
+		table[slot] = key ^ data;
+		table[slot + 1] = data;
+	}
+
+	private static long pack(int move, int score, int depth, Bound bound, int age) {
+		int clampedScore = Math.max(MIN_SCORE, Math.min(MAX_SCORE, score));
+		int clampedDepth = Math.max(0, Math.min(MAX_DEPTH, depth));
+		return (move & 0xFFFFFFFFL)
+				| (clampedScore & 0xFFFFL) << SCORE_SHIFT
+				| (long) clampedDepth << DEPTH_SHIFT
+				// stored one up, so that no valid entry is all zeroes
+				| (long) (bound.ordinal() + 1) << BOUND_SHIFT
+				| (long) age << AGE_SHIFT;
+	}
+
+	/**
+	 * Starts a new search: entries from earlier searches are replaced before those of this one
+	 */
+	public void newSearch() { age = (age + 1) % AGES; }
+
+	/**
+	 * Empties the table; must not run concurrently with searches
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		age = 0;
+	}
+
+	/**
+	 * @return how full the table is in per mille, estimated from the first thousand entries and
+	 * counting only those of the current search
+	 */
+	public int hashfull() {
+		int sample = Math.min(1000, capacity());
+		int used = 0;
+		for (int i = 0; i < sample; i++) {
+			long data = table[i * 2 + 1];
+			if (data != MISS && age(data) == age) used++;
+		}
+		return used * 1000 / sample;
+	}
+
+	/**
+	 * @param data data from {@link #probe(long)}
+	 * @return the best move, encoded with {@link IntMove}; may be {@link IntMove#NONE}
+	 */
+	public static int move(long data) { return (int) data; }
+
+	/**
+	 * @param data data from {@link #probe(long)}
+	 * @return the score
+	 */
+	public static int score(long data) { return (short) (data >>> SCORE_SHIFT); }
+
+	/**
+	 * @param data data from {@link #probe(long)}
+	 * @return the depth searched
+	 */
+	public static int depth(long data) { return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH; }
+
+	/**
+	 * @param data data from {@link #probe(long)}
+	 * @return how the score relates to the true score
+	 */
+	@Nonnull public static Bound bound(long data) {
+		return BOUNDS[(int) (data >>> BOUND_SHIFT & 0x3) - 1];
+	}
+
+	private static int age(long data) { return (int) (data >>> AGE_SHIFT) & (AGES - 1); }
+}
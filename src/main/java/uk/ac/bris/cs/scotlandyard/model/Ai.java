@@ -34,6 +34,45 @@ public interface Ai {
 	 */
 	@Nonnull Move pickMove(@Nonnull Board board, Pair<Long, TimeUnit> timeoutPair);
 
+	/**
+	 * Picks a move by a deadline the caller may cancel early. AIs that think for a while should
+	 * override this to stop once {@link Deadline#isExpired()} and to {@link Deadline#offer(Move)}
+	 * their best move so far as they go, which the caller may play if they don't return in time.
+	 * Defaults to {@link #pickMove(Board, Pair)} with the time left.
+	 *
+	 * @param board    the game board
+	 * @param deadline when the move is due
+	 * @return a correct move from {@link Board#getAvailableMoves()} in the game board
+	 */
+	@Nonnull default Move pickMove(@Nonnull Board board, @Nonnull Deadline deadline) {
+		return pickMove(board, deadline.remaining());
+	}
+
+
+	/**
+	 * Called when the other side is to move, to think ahead while it does. The AI may search the
+	 * board and {@link Deadline#offer(Move)} the move it expects to be played, and should return
+	 * once the deadline expires, which it does early when the real move is made. The next call
+	 * is {@link #onPonderResult(boolean)}, then {@link #pickMove(Board, Deadline)} or another
+	 * {@link #ponder(Board, Deadline)}, possibly while this call is still returning. On MrX's
+	 * turn the detectives get a board without available moves, as his give away where he is; the
+	 * moves they offer are then moves MrX could make from where they think he is.
+	 * Defaults to no-op.
+	 *
+	 * @param board    the board the other side is to move on
+	 * @param deadline when the other side's move is due; cancelled when it is made
+	 */
+	default void ponder(@Nonnull Board board, @Nonnull Deadline deadline) {}
+
+	/**
+	 * Called when the move pondered on with {@link #ponder(Board, Deadline)} has been made.
+	 * Whether it was the expected move is judged as this AI could see it: a hidden move of MrX
+	 * is a hit if it adds what was expected to his travel log.
+	 * Defaults to no-op.
+	 *
+	 * @param hit whether the move made was the last one offered to the pondering deadline
+	 */
+	default void onPonderResult(boolean hit) {}
 
 	/**
 	 * Called after the game has ended and that this Ai is about to be terminated
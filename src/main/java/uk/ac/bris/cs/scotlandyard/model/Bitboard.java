@@ -0,0 +1,86 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Static helpers for sets of stations stored as bits in a {@code long[]}; station {@code n} is bit
+ * {@code n % 64} of word {@code n / 64}, so the 199 stations of the standard map fit in four
+ * longs.
+ * <br>
+ * Bitboards are plain arrays: methods that modify one say so, everything else treats its
+ * arguments as read only.
+ */
+public final class Bitboard {
+
+	private Bitboard() {}
+
+	/**
+	 * @param maxNode the largest station that will be stored
+	 * @return the number of words needed
+	 */
+	public static int words(int maxNode) { return (Math.max(maxNode, 0) >> 6) + 1; }
+	/**
+	 * @param maxNode the largest station that will be stored
+	 * @return a new empty bitboard
+	 */
+	@Nonnull public static long[] empty(int maxNode) { return new long[words(maxNode)]; }
+	/**
+	 * @param board the bitboard
+	 * @param node the station
+	 * @return whether the station is in the bitboard
+	 */
+	public static boolean contains(@Nonnull long[] board, int node) {
+		int word = node >> 6;
+		return node >= 0 && word < board.length && (board[word] & (1L << node)) != 0;
+	}
+	/**
+	 * Adds the station to the bitboard, modifying it
+	 *
+	 * @param board the bitboard
+	 * @param node the station
+	 */
+	public static void set(@Nonnull long[] board, int node) { board[node >> 6] |= 1L << node; }
+	/**
+	 * Removes the station from the bitboard, modifying it
+	 *
+	 * @param board the bitboard
+	 * @param node the station
+	 */
+	public static void clear(@Nonnull long[] board, int node) {
+		int word = node >> 6;
+		if (node >= 0 && word < board.length) board[word] &= ~(1L << node);
+	}
+	/**
+	 * @param board the bitboard
+	 * @return the number of stations in the bitboard
+	 */
+	public static int cardinality(@Nonnull long[] board) {
+		int count = 0;
+		for (long word : board) count += Long.bitCount(word);
+		return count;
+	}
+	/**
+	 * @param board the bitboard
+	 * @return whether the bitboard has no stations
+	 */
+	public static boolean isEmpty(@Nonnull long[] board) {
+		for (long word : board) if (word != 0) return false;
+		return true;
+	}
+	/**
+	 * @param board the bitboard
+	 * @param from the station to start from, inclusive
+	 * @return the first station &gt;= from in the bitboard, or -1 if there is none
+	 */
+	public static int nextSetBit(@Nonnull long[] board, int from) {
+		if (from < 0) from = 0;
+		int word = from >> 6;
+		if (word >= board.length) return -1;
+		long bits = board[word] & (-1L << from);
+		while (true) {
+			if (bits != 0) return (word << 6) + Long.numberOfTrailingZeros(bits);
+			if (++word == board.length) return -1;
+			bits = board[word];
+		}
+	}
+}
@@ -74,6 +74,37 @@ public interface Board {
 		 * {@link #getAvailableMoves()}
 		 */
 		@Nonnull GameState advance(Move move);
+
+		/**
+		 * The default looks the move up in {@link #getAvailableMoves()}; states that can check
+		 * it against the rules without making every move should override this.
+		 *
+		 * @param move the move
+		 * @return whether the move is one of {@link #getAvailableMoves()}
+		 */
+		default boolean isLegal(Move move) { return getAvailableMoves().contains(move); }
+
+		/**
+		 * Like {@link #advance(Move)} but without checking the move, for engines that only
+		 * advance with moves they got from this state. The result of advancing with any other
+		 * move is undefined. The default checks anyway.
+		 *
+		 * @param move the move to make, which must be legal
+		 * @return the game state of which the given move has been made
+		 */
+		@Nonnull default GameState advanceUnchecked(Move move) { return advance(move); }
+
+		/**
+		 * A key identifying this position, see {@link Zobrist}. Equal positions have equal keys
+		 * and different positions almost always have different ones.
+		 * <br>
+		 * The default computes the key from the board with {@link Zobrist#of(Board, int)}, where
+		 * MrX is nowhere as his location isn't part of the board. States that know where he is
+		 * should override this, preferably keeping the key up to date as moves are made.
+		 *
+		 * @return the key of this position
+		 */
+		default long positionKey() { return Zobrist.of(this, -1); }
 	}
 
 
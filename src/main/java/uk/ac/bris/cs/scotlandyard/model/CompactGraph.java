@@ -0,0 +1,242 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ValueGraph;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * A compact, int-indexed adjacency view of the game graph in compressed sparse row form.
+ * <br>
+ * Stations are used directly as indices, every undirected edge is stored once in each direction,
+ * the edges of a station are sorted by target and the transports of an edge are kept as a
+ * bitmask (see {@link #bit(Transport)}).
+ * The neighbours of every station are also kept as {@link Bitboard}s per transport so that move
+ * filtering can be done with word-wise intersections.
+ * Nothing here boxes or allocates after construction, so this is the structure used for move
+ * generation; {@link GameSetup#graph} remains the public view.
+ * <br>
+ * Use {@link GameSetup#compactGraph()} rather than building one directly.
+ */
+public final class CompactGraph {
+
+	private static final Transport[] TRANSPORTS = Transport.values();
+	static final int TRANSPORT_COUNT = TRANSPORTS.length;
+	/**
+	 * Pseudo transport index for {@link #neighbours(int, int, int)} that matches any transport
+	 */
+	public static final int ANY = TRANSPORT_COUNT;
+	private static final int SLOTS = TRANSPORT_COUNT + 1;
+
+	private final int maxNode;
+	private final int nodeCount;
+	private final boolean[] present;
+	// edges of node n are [offsets[n], offsets[n + 1])
+	private final int[] offsets;
+	private final int[] targets;
+	private final byte[] transports;
+	private final int words;
+	// neighbour bitboards, (node * SLOTS + transport) * words + word
+	private final long[] neighbours;
+
+	private CompactGraph(int maxNode, int nodeCount, boolean[] present,
+	                     int[] offsets, int[] targets, byte[] transports) {
+		this.maxNode = maxNode;
+		this.nodeCount = nodeCount;
+		this.present = present;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.transports = transports;
+		this.words = Bitboard.words(maxNode);
+		this.neighbours = new long[(maxNode + 1) * SLOTS * words];
+		for (int node = 0; node <= maxNode; node++) {
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+				int target = targets[edge];
+				int word = (target >> 6);
+				long bit = 1L << target;
+				for (int t = 0; t < TRANSPORT_COUNT; t++) {
+					if ((transports[edge] & (1 << t)) != 0)
+						neighbours[(node * SLOTS + t) * words + word] |= bit;
+				}
+				neighbours[(node * SLOTS + ANY) * words + word] |= bit;
+			}
+		}
+	}
+
+	/**
+	 * @param graph the graph to compile; stations must be non-negative
+	 * @return the compact form of the given graph
+	 */
+	@Nonnull public static CompactGraph of(
+			@Nonnull ValueGraph<Integer, ImmutableSet<Transport>> graph) {
+		Objects.requireNonNull(graph);
+		int maxNode = -1;
+		for (int node : graph.nodes()) {
+			if (node < 0) throw new IllegalArgumentException("Negative station " + node);
+			maxNode = Math.max(maxNode, node);
+		}
+		var present = new boolean[maxNode + 1];
+		for (int node : graph.nodes()) present[node] = true;
+
+		var offsets = new int[maxNode + 2];
+		int edges = 0;
+		for (int node = 0; node <= maxNode; node++) {
+			offsets[node] = edges;
+			if (present[node]) edges += graph.adjacentNodes(node).size();
+		}
+		offsets[maxNode + 1] = edges;
+
+		var targets = new int[edges];
+		var transports = new byte[edges];
+		for (int node = 0; node <= maxNode; node++) {
+			if (!present[node]) continue;
+			int edge = offsets[node];
+			// sorted, so an edge's index follows from its target, see edge(int, int)
+			int[] adjacents = graph.adjacentNodes(node).stream().mapToInt(Integer::intValue)
+					.sorted().toArray();
+			for (int adjacent : adjacents) {
+				int mask = 0;
+				for (Transport t : graph.edgeValueOrDefault(node, adjacent, ImmutableSet.of()))
+					mask |= bit(t);
+				targets[edge] = adjacent;
+				transports[edge] = (byte) mask;
+				edge++;
+			}
+		}
+		return new CompactGraph(maxNode, graph.nodes().size(), present,
+				offsets, targets, transports);
+	}
+
+	/**
+	 * @param transport the transport
+	 * @return the bit representing the given transport in {@link #transports(int)}
+	 */
+	public static int bit(@Nonnull Transport transport) { return 1 << transport.ordinal(); }
+
+	/**
+	 * @param mask a transport bitmask
+	 * @param transport the transport
+	 * @return whether the bitmask contains the given transport
+	 */
+	public static boolean has(int mask, @Nonnull Transport transport) {
+		return (mask & bit(transport)) != 0;
+	}
+
+	/**
+	 * @param ordinal the ordinal of a {@link Transport}
+	 * @return the transport; avoids the array copy of {@link Transport#values()}
+	 */
+	@Nonnull static Transport transport(int ordinal) { return TRANSPORTS[ordinal]; }
+
+	/**
+	 * @return the largest station in the graph, -1 if the graph is empty
+	 */
+	public int maxNode() { return maxNode; }
+	/**
+	 * @return the number of stations in the graph
+	 */
+	public int nodeCount() { return nodeCount; }
+	/**
+	 * @return the number of directed edges; each undirected edge counts twice
+	 */
+	public int edgeCount() { return targets.length; }
+	/**
+	 * @param node the station
+	 * @return whether the station is part of the graph
+	 */
+	public boolean contains(int node) {
+		return node >= 0 && node <= maxNode && present[node];
+	}
+	/**
+	 * @param node the station
+	 * @return the index of the first edge leaving the given station
+	 * @throws IllegalArgumentException if the station is not part of the graph
+	 */
+	public int firstEdge(int node) {
+		if (!contains(node)) throw new IllegalArgumentException("Node " + node + " not in graph");
+		return offsets[node];
+	}
+	/**
+	 * @param node the station
+	 * @return the index one past the last edge leaving the given station
+	 * @throws IllegalArgumentException if the station is not part of the graph
+	 */
+	public int lastEdge(int node) {
+		if (!contains(node)) throw new IllegalArgumentException("Node " + node + " not in graph");
+		return offsets[node + 1];
+	}
+	/**
+	 * @param node the station
+	 * @return the number of stations adjacent to the given station
+	 */
+	public int degree(int node) { return lastEdge(node) - firstEdge(node); }
+	/**
+	 * @param edge the edge index
+	 * @return the station the edge leads to
+	 */
+	public int target(int edge) { return targets[edge]; }
+	/**
+	 * @param edge the edge index
+	 * @return the transports of the edge as a bitmask, see {@link #bit(Transport)}
+	 */
+	public int transports(int edge) { return transports[edge]; }
+	/**
+	 * @return a hash of the stations and edges, for telling apart data derived from different
+	 * graphs; equal graphs have equal fingerprints
+	 */
+	public long fingerprint() {
+		long hash = Zobrist.mix(maxNode);
+		for (int node = 0; node <= maxNode; node++) {
+			if (!present[node]) continue;
+			hash = Zobrist.mix(hash ^ node);
+			for (int edge = offsets[node]; edge < offsets[node + 1]; edge++)
+				hash = Zobrist.mix(hash ^ ((long) targets[edge] << 8 | transports[edge]));
+		}
+		return hash;
+	}
+	/**
+	 * @return the number of words in the bitboards of this graph
+	 */
+	public int words() { return words; }
+	/**
+	 * @param node the station, must be part of the graph
+	 * @param transport the ordinal of a {@link Transport}, or {@link #ANY}
+	 * @param word the word index, less than {@link #words()}
+	 * @return the given word of the bitboard of stations adjacent to the given station by the
+	 * given transport
+	 */
+	public long neighbours(int node, int transport, int word) {
+		return neighbours[(node * SLOTS + transport) * words + word];
+	}
+	/**
+	 * @param node the station
+	 * @param transport the ordinal of a {@link Transport}, or {@link #ANY}
+	 * @return a new bitboard of stations adjacent to the given station by the given transport
+	 */
+	@Nonnull public long[] neighbours(int node, int transport) {
+		firstEdge(node);
+		var board = new long[words];
+		System.arraycopy(neighbours, (node * SLOTS + transport) * words, board, 0, words);
+		return board;
+	}
+	/**
+	 * @param source the source station
+	 * @param destination the destination station
+	 * @return the index of the edge between the two stations, or -1 if there is none
+	 */
+	public int edge(int source, int destination) {
+		if (!contains(source) || destination < 0 || destination > maxNode) return -1;
+		int base = (source * SLOTS + ANY) * words;
+		int word = destination >> 6;
+		long bit = 1L << destination;
+		if ((neighbours[base + word] & bit) == 0) return -1;
+		// targets are sorted, so the edge comes after one edge per smaller neighbour
+		int rank = Long.bitCount(neighbours[base + word] & (bit - 1));
+		for (int w = 0; w < word; w++) rank += Long.bitCount(neighbours[base + w]);
+		return offsets[source] + rank;
+	}
+}
@@ -0,0 +1,102 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+
+/**
+ * The time an {@link Ai} has to pick a move, handed to
+ * {@link Ai#pickMove(Board, Deadline)}: a point in {@link System#nanoTime()} time that the caller
+ * can also bring forward by cancelling.
+ * <br>
+ * The AI polls {@link #isExpired()} (or {@link #remainingNanos()}) while it thinks and offers
+ * the best move it has found so far with {@link #offer(Move)} as it goes. If it hasn't returned
+ * by the time the caller can wait no longer, the caller cancels the deadline, so the AI stops
+ * rather than thinking on in the background, and can play {@link #bestSoFar()} instead.
+ * <br>
+ * Deadlines are safe to share between the calling and the thinking threads.
+ */
+public final class Deadline {
+
+	private final long end;
+	private volatile boolean cancelled;
+	private volatile Move best;
+
+	private Deadline(long end) { this.end = end; }
+
+	/**
+	 * @param duration the time from now
+	 * @param unit the unit of the duration
+	 * @return a deadline the given time from now
+	 * @throws IllegalArgumentException if the duration is negative
+	 */
+	@Nonnull public static Deadline after(long duration, @Nonnull TimeUnit unit) {
+		if (duration < 0) throw new IllegalArgumentException("Negative duration: " + duration);
+		return new Deadline(System.nanoTime() + unit.toNanos(duration));
+	}
+
+	/**
+	 * @param timeoutPair the time from now, as given to {@link Ai#pickMove(Board, Pair)}
+	 * @return a deadline the given time from now
+	 * @throws IllegalArgumentException if the duration is negative
+	 */
+	@Nonnull public static Deadline of(@Nonnull Pair<Long, TimeUnit> timeoutPair) {
+		return after(timeoutPair.left(), timeoutPair.right());
+	}
+
+	/**
+	 * @return the deadline in {@link System#nanoTime()} time, ignoring cancellation
+	 */
+	public long nanoTime() { return end; }
+
+	/**
+	 * @return the nanoseconds left, 0 once expired
+	 */
+	public long remainingNanos() {
+		if (cancelled) return 0;
+		return Math.max(0, end - System.nanoTime());
+	}
+
+	/**
+	 * @return the time left as a timeout pair for {@link Ai#pickMove(Board, Pair)}
+	 */
+	@Nonnull public Pair<Long, TimeUnit> remaining() {
+		return new Pair<>(remainingNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return whether the time is up or the deadline was cancelled
+	 */
+	public boolean isExpired() { return cancelled || end - System.nanoTime() <= 0; }
+
+	/**
+	 * @return whether the deadline was cancelled
+	 */
+	public boolean isCancelled() { return cancelled; }
+
+	/**
+	 * Ends the time to think now; the AI should return as soon as it notices
+	 */
+	public void cancel() { cancelled = true; }
+
+	/**
+	 * Records the best move found so far, replacing any offered before
+	 *
+	 * @param move a move from the {@link Board#getAvailableMoves()} of the board being thought on
+	 */
+	public void offer(@Nonnull Move move) { best = Objects.requireNonNull(move); }
+
+	/**
+	 * @return the last move offered; empty if none was
+	 */
+	@Nonnull public Optional<Move> bestSoFar() { return Optional.ofNullable(best); }
+
+	@Override public String toString() {
+		return "Deadline{remaining=" + TimeUnit.NANOSECONDS.toMillis(remainingNanos()) + "ms"
+				+ (cancelled ? ", cancelled" : "") + "}";
+	}
+}
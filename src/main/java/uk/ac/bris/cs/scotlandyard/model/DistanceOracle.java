@@ -0,0 +1,266 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.io.Resources;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Shortest path lengths, in moves, between every pair of stations of a {@link CompactGraph}.
+ * <br>
+ * There is one table per subgraph: one for each {@link Transport} on its own ({@code
+ * transport.ordinal()}), one for the whole graph ({@link CompactGraph#ANY}) and one for the
+ * transports detectives have tickets for ({@link #DETECTIVE}, i.e everything but the ferry). The
+ * tables are byte matrices filled by one breadth first search per station, run in parallel, so a
+ * lookup is a single array read.
+ * <br>
+ * Use {@link GameSetup#distanceOracle()} rather than building one directly. As the tables only
+ * depend on the graph they can be saved with {@link #write(Path)} and read back with
+ * {@link #load(Path, CompactGraph)}; {@link #cached(Path, CompactGraph)} does both, and
+ * {@link #forGraph(CompactGraph)} does so for the standard graph in {@link #CACHE_FILE} next to
+ * graph.txt. Oracles are immutable and safe to share between threads.
+ */
+public final class DistanceOracle {
+
+	/**
+	 * The subgraph of the transports detectives can use, i.e those not paid for with
+	 * {@link Ticket#SECRET}
+	 */
+	public static final int DETECTIVE = CompactGraph.ANY + 1;
+	/**
+	 * The number of subgraphs, and so of tables
+	 */
+	public static final int SUBGRAPHS = DETECTIVE + 1;
+	/**
+	 * The distance between stations with no path between them in the subgraph
+	 */
+	public static final int UNREACHABLE = 0xFF;
+
+	/**
+	 * The name of the standard graph's cache file, a sibling of graph.txt
+	 */
+	public static final String CACHE_FILE = "graph.distances";
+
+	private static final int MAGIC = 0x53594430; // "SYD0"
+
+	private final long fingerprint;
+	private final int size;
+	// (subgraph * size + from) * size + to
+	private final byte[] distances;
+
+	private DistanceOracle(long fingerprint, int size, byte[] distances) {
+		this.fingerprint = fingerprint;
+		this.size = size;
+		this.distances = distances;
+	}
+
+	/**
+	 * Computes the distances of a graph
+	 *
+	 * @param graph the graph
+	 * @return the oracle
+	 */
+	@Nonnull public static DistanceOracle of(@Nonnull CompactGraph graph) {
+		int size = graph.maxNode() + 1;
+		var distances = new byte[SUBGRAPHS * size * size];
+		Arrays.fill(distances, (byte) UNREACHABLE);
+		int[] masks = new int[SUBGRAPHS];
+		for (int t = 0; t < CompactGraph.TRANSPORT_COUNT; t++) {
+			masks[t] = 1 << t;
+			masks[CompactGraph.ANY] |= 1 << t;
+			if (CompactGraph.transport(t).requiredTicket() != Ticket.SECRET)
+				masks[DETECTIVE] |= 1 << t;
+		}
+		// each task writes the rows of its own source only
+		IntStream.range(0, SUBGRAPHS * size).parallel().forEach(task -> {
+			int source = task % size;
+			if (graph.contains(source))
+				search(graph, masks[task / size], source, distances, task * size, size);
+		});
+		return new DistanceOracle(graph.fingerprint(), size, distances);
+	}
+
+	/**
+	 * Computes the distances of a graph like {@link #of(CompactGraph)}, except that those of the
+	 * standard graph go through the {@link #CACHE_FILE} next to graph.txt, if that resource is a
+	 * plain file rather than e.g part of a jar
+	 *
+	 * @param graph the graph
+	 * @return the oracle
+	 */
+	@Nonnull public static DistanceOracle forGraph(@Nonnull CompactGraph graph) {
+		return Standard.CACHE != null && graph.fingerprint() == Standard.FINGERPRINT
+				? cached(Standard.CACHE, graph) : of(graph);
+	}
+
+	// the standard graph's fingerprint and cache file, loaded on first use of forGraph
+	private static final class Standard {
+		static final long FINGERPRINT;
+		static final Path CACHE;
+
+		static {
+			long fingerprint = 0;
+			Path cache = null;
+			try {
+				var url = Resources.getResource("graph.txt");
+				if ("file".equals(url.getProtocol())) {
+					fingerprint = CompactGraph.of(ScotlandYard.standardGraph()).fingerprint();
+					cache = Paths.get(url.toURI()).resolveSibling(CACHE_FILE);
+				}
+			} catch (IOException | URISyntaxException | IllegalArgumentException e) {
+				// no standard graph to cache, every graph is computed
+			}
+			FINGERPRINT = fingerprint;
+			CACHE = cache;
+		}
+	}
+
+	private static void search(CompactGraph graph, int mask, int source,
+	                           byte[] distances, int row, int size) {
+		int[] queue = new int[size];
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		distances[row + source] = 0;
+		while (head < tail) {
+			int node = queue[head++];
+			int next = (distances[row + node] & 0xFF) + 1;
+			// paths longer than a byte can hold are left unreachable
+			if (next >= UNREACHABLE) break;
+			for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+				int target = graph.target(edge);
+				if ((graph.transports(edge) & mask) == 0
+						|| distances[row + target] != (byte) UNREACHABLE) continue;
+				distances[row + target] = (byte) next;
+				queue[tail++] = target;
+			}
+		}
+	}
+
+	/**
+	 * @return the {@link CompactGraph#fingerprint()} of the graph the distances are of
+	 */
+	public long fingerprint() { return fingerprint; }
+
+	/**
+	 * @param from the source station
+	 * @param to the destination station
+	 * @return the fewest moves from one station to the other using any transport, or
+	 * {@link #UNREACHABLE}
+	 */
+	public int distance(int from, int to) { return distance(CompactGraph.ANY, from, to); }
+
+	/**
+	 * @param from the source station
+	 * @param to the destination station
+	 * @return the fewest moves from one station to the other using detective transports, or
+	 * {@link #UNREACHABLE}
+	 */
+	public int detectiveDistance(int from, int to) { return distance(DETECTIVE, from, to); }
+
+	/**
+	 * @param transport the only transport to use
+	 * @param from the source station
+	 * @param to the destination station
+	 * @return the fewest moves from one station to the other using only the transport, or
+	 * {@link #UNREACHABLE}
+	 */
+	public int distance(@Nonnull Transport transport, int from, int to) {
+		return distance(transport.ordinal(), from, to);
+	}
+
+	/**
+	 * @param subgraph a transport ordinal, {@link CompactGraph#ANY} or {@link #DETECTIVE}
+	 * @param from the source station
+	 * @param to the destination station
+	 * @return the fewest moves from one station to the other within the subgraph, or
+	 * {@link #UNREACHABLE}, also for stations not on the graph
+	 * @throws IllegalArgumentException if the subgraph doesn't exist
+	 */
+	public int distance(int subgraph, int from, int to) {
+		if (subgraph < 0 || subgraph >= SUBGRAPHS)
+			throw new IllegalArgumentException("No such subgraph: " + subgraph);
+		if (from < 0 || from >= size || to < 0 || to >= size) return UNREACHABLE;
+		return distances[(subgraph * size + from) * size + to] & 0xFF;
+	}
+
+	/**
+	 * Saves the tables, see {@link #load(Path, CompactGraph)}
+	 *
+	 * @param path the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(@Nonnull Path path) throws IOException {
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MAGIC);
+			out.writeLong(fingerprint);
+			out.writeInt(size);
+			out.writeInt(SUBGRAPHS);
+			out.write(distances);
+		}
+	}
+
+	/**
+	 * Reads tables saved with {@link #write(Path)}
+	 *
+	 * @param path the file to read
+	 * @param graph the graph the tables must be of
+	 * @return the oracle
+	 * @throws IOException if the file can't be read, is corrupt or is of another graph
+	 */
+	@Nonnull public static DistanceOracle load(@Nonnull Path path, @Nonnull CompactGraph graph)
+			throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC) throw new IOException("Not a distance table: " + path);
+			if (in.readLong() != graph.fingerprint())
+				throw new IOException("Distance table is of another graph: " + path);
+			int size = in.readInt();
+			if (size != graph.maxNode() + 1 || in.readInt() != SUBGRAPHS)
+				throw new IOException("Distance table has the wrong shape: " + path);
+			var distances = new byte[SUBGRAPHS * size * size];
+			in.readFully(distances);
+			if (in.read() != -1) throw new IOException("Trailing data in distance table: " + path);
+			return new DistanceOracle(graph.fingerprint(), size, distances);
+		}
+	}
+
+	/**
+	 * Reads the tables of the graph from a file, or computes them and tries to save them there if
+	 * the file is missing or unusable. Failing to save is not an error.
+	 *
+	 * @param path the cache file, e.g next to the graph's source
+	 * @param graph the graph
+	 * @return the oracle
+	 */
+	@Nonnull public static DistanceOracle cached(@Nonnull Path path, @Nonnull CompactGraph graph) {
+		Objects.requireNonNull(path);
+		if (Files.isRegularFile(path)) {
+			try {
+				return load(path, graph);
+			} catch (IOException e) {
+				// stale or broken; recompute below
+			}
+		}
+		var oracle = of(graph);
+		try {
+			oracle.write(path);
+		} catch (IOException e) {
+			// the cache is an optimisation only
+		}
+		return oracle;
+	}
+}
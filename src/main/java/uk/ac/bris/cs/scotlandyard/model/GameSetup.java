@@ -25,16 +25,55 @@ public final class GameSetup implements Serializable {
 	 * MrX reveal rounds; false is hidden, true is reveal
 	 */
 	public final ImmutableList<Boolean> rounds;
+
+	private transient volatile CompactGraph compactGraph;
+	private transient volatile MoveTable moveTable;
+	private transient volatile DistanceOracle distanceOracle;
+	// hashing the graph visits every edge, so it is done once; 0 is not done yet
+	private transient int hash;
+
 	public GameSetup(@Nonnull ImmutableValueGraph<Integer, ImmutableSet<Transport>> graph,
 	                 @Nonnull ImmutableList<Boolean> rounds) {
 		this.graph = Objects.requireNonNull(graph);
 		this.rounds = Objects.requireNonNull(rounds);
 	}
+	/**
+	 * @return the compact form of {@link #graph}, compiled once on first use
+	 */
+	@Nonnull public CompactGraph compactGraph() {
+		// racing threads build identical immutable graphs, so a plain volatile write suffices
+		var compact = compactGraph;
+		if (compact == null) compactGraph = compact = CompactGraph.of(graph);
+		return compact;
+	}
+	/**
+	 * @return the shared move instances for {@link #graph}, made once on first use
+	 */
+	@Nonnull public MoveTable moveTable() {
+		var table = moveTable;
+		if (table == null) moveTable = table = new MoveTable(compactGraph());
+		return table;
+	}
+	/**
+	 * @return the distances between all stations of {@link #graph}, computed once on first use, or
+	 * read from disk for the standard graph, see {@link DistanceOracle#forGraph(CompactGraph)}
+	 */
+	@Nonnull public DistanceOracle distanceOracle() {
+		var oracle = distanceOracle;
+		if (oracle == null) distanceOracle = oracle = DistanceOracle.forGraph(compactGraph());
+		return oracle;
+	}
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		return Objects.equals(graph, ((GameSetup) o).graph) &&
-				Objects.equals(rounds, ((GameSetup) o).rounds);
+		GameSetup that = (GameSetup) o;
+		return hashCode() == that.hashCode() &&
+				Objects.equals(rounds, that.rounds) &&
+				Objects.equals(graph, that.graph);
+	}
+	@Override public int hashCode() {
+		int h = hash;
+		if (h == 0) hash = h = Objects.hash(graph, rounds);
+		return h;
 	}
-	@Override public int hashCode() { return Objects.hash(graph, rounds); }
 }
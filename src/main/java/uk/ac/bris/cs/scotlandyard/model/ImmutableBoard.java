@@ -5,10 +5,10 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.Random;
 
 import javax.annotation.Nonnull;
 
@@ -23,8 +23,9 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
  * This class isn't really intended for use with the cw-model part but if you can justify the use
  * then feel free to include it.
  */
-public final class ImmutableBoard implements Board, Serializable {
+public final class ImmutableBoard implements Board, MoveGenerator, Serializable {
 	private static final long serialVersionUID = -7495825440220065823L;
+	private static final Ticket[] TICKETS = Ticket.values();
 
 	private final GameSetup setup;
 	private final ImmutableMap<Detective, Integer> detectiveLocations;
@@ -32,29 +33,64 @@ public final class ImmutableBoard implements Board, Serializable {
 	private final ImmutableList<LogEntry> mrXTravelLog;
 	private final ImmutableSet<Piece> winner;
 	private final ImmutableSet<Move> availableMoves;
+	// Zobrist.of(this, -1), made on first use; 0 is not made yet
+	private transient long key;
 
+	/**
+	 * A board made of {@link Player}s, whose ticket maps snapshots can share
+	 */
+	interface PlayerBoard extends Board {
+		/**
+		 * @return MrX and the detectives, in the order of {@link #getPlayers()}
+		 */
+		@Nonnull List<Player> players();
+	}
 
 	/**
-	 * Creates an immutable board snapshot of the given board
+	 * Creates an immutable board snapshot of the given board. The setup, travel log, winner and
+	 * available moves are immutable already and are shared rather than copied, as are the ticket
+	 * maps of {@link PlayerBoard}s' players; snapshots of snapshots share everything.
 	 */
 	public ImmutableBoard(Board that) {
+		if (that instanceof ImmutableBoard) {
+			var board = (ImmutableBoard) that;
+			this.setup = board.setup;
+			this.detectiveLocations = board.detectiveLocations;
+			this.tickets = board.tickets;
+			this.mrXTravelLog = board.mrXTravelLog;
+			this.winner = board.winner;
+			this.availableMoves = board.availableMoves;
+			this.key = board.key;
+			return;
+		}
 		this.setup = Objects.requireNonNull(that.getSetup());
-		this.detectiveLocations = Objects.requireNonNull(that.getPlayers().stream()
-				.filter(Piece::isDetective)
-				.map(Detective.class::cast)
-				.collect(ImmutableMap.toImmutableMap(Function.identity(),
-						x1 -> that.getDetectiveLocation(x1).orElseThrow())));
-		this.tickets = Objects.requireNonNull(
-				that.getPlayers().stream().collect(ImmutableMap.toImmutableMap(
-						Function.identity(), x -> {
-							TicketBoard board = that.getPlayerTickets(x).orElseThrow();
-							return Stream.of(Ticket.values()).collect(ImmutableMap.toImmutableMap(
-									Function.identity(), board::getCount));
-						})));
+		List<Player> players = that instanceof PlayerBoard ? ((PlayerBoard) that).players() : null;
+		int size = players != null ? players.size() : that.getPlayers().size();
+		var locations = ImmutableMap.<Detective, Integer>builderWithExpectedSize(size);
+		var tickets = ImmutableMap.<Piece, ImmutableMap<Ticket, Integer>>builderWithExpectedSize(size);
+		if (players != null) {
+			// a player's map is made once and kept by every state the player is unchanged in
+			for (Player player : players) {
+				if (player.isDetective()) locations.put((Detective) player.piece(), player.location());
+				tickets.put(player.piece(), player.boardTickets());
+			}
+		} else {
+			for (Piece piece : that.getPlayers()) {
+				if (piece.isDetective()) {
+					var detective = (Detective) piece;
+					locations.put(detective, that.getDetectiveLocation(detective).orElseThrow());
+				}
+				TicketBoard board = that.getPlayerTickets(piece).orElseThrow();
+				var counts = ImmutableMap.<Ticket, Integer>builderWithExpectedSize(TICKETS.length);
+				for (Ticket ticket : TICKETS) counts.put(ticket, board.getCount(ticket));
+				tickets.put(piece, counts.build());
+			}
+		}
+		this.detectiveLocations = locations.build();
+		this.tickets = tickets.build();
 		this.mrXTravelLog = Objects.requireNonNull(that.getMrXTravelLog());
 		this.winner = Objects.requireNonNull(that.getWinner());
 		this.availableMoves = Objects.requireNonNull(that.getAvailableMoves());
-
 	}
 
 	public ImmutableBoard(GameSetup setup,
@@ -71,6 +107,15 @@ public final class ImmutableBoard implements Board, Serializable {
 		this.availableMoves = Objects.requireNonNull(availableMoves);
 	}
 
+	/**
+	 * @return this board without its available moves, for players who mustn't see them: on MrX's
+	 * turn they give away where he is
+	 */
+	@Nonnull public ImmutableBoard withoutAvailableMoves() {
+		return new ImmutableBoard(setup, detectiveLocations, tickets, mrXTravelLog, winner,
+				ImmutableSet.of());
+	}
+
 	@Nonnull @Override public GameSetup getSetup() { return setup; }
 	@Nonnull @Override public ImmutableSet<Piece> getPlayers() { return tickets.keySet(); }
 	@Nonnull @Override public Optional<Integer> getDetectiveLocation(Detective detective) {
@@ -83,19 +128,35 @@ public final class ImmutableBoard implements Board, Serializable {
 	@Nonnull @Override public ImmutableList<LogEntry> getMrXTravelLog() { return mrXTravelLog; }
 	@Nonnull @Override public ImmutableSet<Piece> getWinner() { return winner; }
 	@Nonnull @Override public ImmutableSet<Move> getAvailableMoves() { return availableMoves; }
+	@Override public boolean forEachMove(@Nonnull MoveConsumer consumer) {
+		return MoveGenerator.of(availableMoves).forEachMove(consumer);
+	}
+	@Override public int countMoves() { return availableMoves.size(); }
+	@Nonnull @Override public Optional<Move> randomMove(@Nonnull Random random) {
+		return MoveGenerator.of(availableMoves).randomMove(random);
+	}
+	/**
+	 * @return the key of this board, see {@link Zobrist#of(Board, int)}; MrX is nowhere as his
+	 * location isn't part of the board
+	 */
+	public long positionKey() {
+		// racing threads compute the same key, so whichever write wins is fine
+		long k = key;
+		if (k == 0) key = k = Zobrist.of(this, -1);
+		return k;
+	}
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		ImmutableBoard that = (ImmutableBoard) o;
-		return Objects.equals(setup, that.setup) &&
+		// different keys are different boards; equal ones are almost always the same board
+		return positionKey() == that.positionKey() &&
 				Objects.equals(detectiveLocations, that.detectiveLocations) &&
 				Objects.equals(tickets, that.tickets) &&
 				Objects.equals(mrXTravelLog, that.mrXTravelLog) &&
 				Objects.equals(winner, that.winner) &&
-				Objects.equals(availableMoves, that.availableMoves);
-	}
-	@Override public int hashCode() {
-		return Objects.hash(setup, detectiveLocations, tickets, mrXTravelLog, winner,
-				availableMoves);
+				Objects.equals(availableMoves, that.availableMoves) &&
+				Objects.equals(setup, that.setup);
 	}
+	@Override public int hashCode() { return Long.hashCode(positionKey()); }
 }
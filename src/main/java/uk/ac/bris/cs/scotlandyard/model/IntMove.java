@@ -0,0 +1,208 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.Visitor;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Static helpers for {@link Move}s encoded as a single int, for engines, transposition tables and
+ * logs that store moves in int arrays instead of objects. From the least significant bit:
+ * <pre>
+ *  0-9   destination (the first destination of a double move)
+ *  10-12 ticket (the first ticket of a double move)
+ *  13-22 second destination, 0 for single moves
+ *  23-25 second ticket, 0 for single moves
+ *  26-28 piece, as its index in {@link ScotlandYard#ALL_PIECES}
+ *  29    set for double moves
+ * </pre>
+ * The source is not part of the encoding as it is always the location of the piece before the
+ * move; it must be supplied when decoding back to a {@link Move}. Encoded moves are never
+ * negative, which leaves {@link #NONE} free to mean no move.
+ */
+public final class IntMove {
+
+	private IntMove() {}
+
+	/**
+	 * Never a valid move
+	 */
+	public static final int NONE = -1;
+	/**
+	 * The largest destination that can be encoded
+	 */
+	public static final int MAX_LOCATION = (1 << 10) - 1;
+
+	private static final int TICKET_SHIFT = 10;
+	private static final int DESTINATION2_SHIFT = 13;
+	private static final int TICKET2_SHIFT = 23;
+	private static final int PIECE_SHIFT = 26;
+	private static final int DOUBLE_FLAG = 1 << 29;
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Piece[] PIECES = ScotlandYard.ALL_PIECES.toArray(new Piece[0]);
+
+	/**
+	 * @param piece the piece
+	 * @return the index of the piece in {@link ScotlandYard#ALL_PIECES}
+	 * @throws IllegalArgumentException if the piece isn't one of them
+	 */
+	public static int pieceIndex(@Nonnull Piece piece) {
+		for (int i = 0; i < PIECES.length; i++) if (PIECES[i] == piece) return i;
+		throw new IllegalArgumentException("Piece can't be encoded: " + piece);
+	}
+
+	private static int location(int location) {
+		if (location < 0 || location > MAX_LOCATION)
+			throw new IllegalArgumentException("Location can't be encoded: " + location);
+		return location;
+	}
+
+	/**
+	 * @param piece the piece moving
+	 * @param ticket the ticket
+	 * @param destination the destination
+	 * @return the encoded single move
+	 * @throws IllegalArgumentException if the piece or destination can't be encoded
+	 */
+	public static int single(@Nonnull Piece piece, @Nonnull Ticket ticket, int destination) {
+		return pieceIndex(piece) << PIECE_SHIFT
+				| ticket.ordinal() << TICKET_SHIFT
+				| location(destination);
+	}
+
+	/**
+	 * @param piece the piece moving
+	 * @param ticket1 the first ticket
+	 * @param destination1 the first destination
+	 * @param ticket2 the second ticket
+	 * @param destination2 the second destination
+	 * @return the encoded double move
+	 * @throws IllegalArgumentException if the piece or a destination can't be encoded
+	 */
+	public static int twice(@Nonnull Piece piece,
+	                        @Nonnull Ticket ticket1, int destination1,
+	                        @Nonnull Ticket ticket2, int destination2) {
+		return DOUBLE_FLAG
+				| single(piece, ticket1, destination1)
+				| ticket2.ordinal() << TICKET2_SHIFT
+				| location(destination2) << DESTINATION2_SHIFT;
+	}
+
+	/**
+	 * @param move the move
+	 * @return the encoded move
+	 * @throws IllegalArgumentException if the piece or a destination can't be encoded
+	 */
+	public static int of(@Nonnull Move move) {
+		if (move instanceof SingleMove) {
+			var single = (SingleMove) move;
+			return single(single.commencedBy(), single.ticket, single.destination);
+		}
+		if (move instanceof DoubleMove) {
+			var x2 = (DoubleMove) move;
+			return twice(x2.commencedBy(),
+					x2.ticket1, x2.destination1, x2.ticket2, x2.destination2);
+		}
+		throw new IllegalArgumentException("Unknown move type: " + move);
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @param source the location of the piece before the move
+	 * @return the decoded move
+	 */
+	@Nonnull public static Move toMove(int move, int source) {
+		if (!isDouble(move))
+			return new SingleMove(piece(move), source, ticket(move), destination(move));
+		return new DoubleMove(piece(move), source,
+				ticket(move), destination(move), ticket2(move), destination2(move));
+	}
+
+	/**
+	 * Decodes the move and visits it
+	 *
+	 * @param move the encoded move
+	 * @param source the location of the piece before the move
+	 * @param visitor the visitor
+	 * @param <T> the return type, see {@link Visitor}
+	 * @return the return value
+	 */
+	public static <T> T visit(int move, int source, @Nonnull Visitor<T> visitor) {
+		return toMove(move, source).visit(visitor);
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return whether it is a double move
+	 */
+	public static boolean isDouble(int move) { return (move & DOUBLE_FLAG) != 0; }
+
+	/**
+	 * @param move the encoded move
+	 * @return the piece moving
+	 */
+	@Nonnull public static Piece piece(int move) { return PIECES[pieceIndexOf(move)]; }
+
+	/**
+	 * @param move the encoded move
+	 * @return the index of the piece moving in {@link ScotlandYard#ALL_PIECES}
+	 */
+	public static int pieceIndexOf(int move) { return (move >>> PIECE_SHIFT) & 0x7; }
+
+	/**
+	 * @param move the encoded move
+	 * @return the ticket of a single move or the first ticket of a double move
+	 */
+	@Nonnull public static Ticket ticket(int move) {
+		return TICKETS[(move >>> TICKET_SHIFT) & 0x7];
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return the destination of a single move or the first destination of a double move
+	 */
+	public static int destination(int move) { return move & MAX_LOCATION; }
+
+	/**
+	 * @param move the encoded double move
+	 * @return the second ticket
+	 * @throws IllegalArgumentException if it is a single move
+	 */
+	@Nonnull public static Ticket ticket2(int move) {
+		if (!isDouble(move)) throw new IllegalArgumentException("Not a double move: " + move);
+		return TICKETS[(move >>> TICKET2_SHIFT) & 0x7];
+	}
+
+	/**
+	 * @param move the encoded double move
+	 * @return the second destination
+	 * @throws IllegalArgumentException if it is a single move
+	 */
+	public static int destination2(int move) {
+		if (!isDouble(move)) throw new IllegalArgumentException("Not a double move: " + move);
+		return (move >>> DESTINATION2_SHIFT) & MAX_LOCATION;
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return where the piece ends up after the move
+	 */
+	public static int finalDestination(int move) {
+		return isDouble(move) ? (move >>> DESTINATION2_SHIFT) & MAX_LOCATION : destination(move);
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return a readable form of the move, like {@link Move#toString()} without the source
+	 */
+	@Nonnull public static String toString(int move) {
+		if (move == NONE) return "NONE";
+		if (!isDouble(move))
+			return ticket(move) + "(" + piece(move) + ", " + destination(move) + ")";
+		return "x2(" + piece(move) + ", " + ticket(move) + ", " + destination(move) + ", "
+				+ ticket2(move) + ", " + destination2(move) + ")";
+	}
+}
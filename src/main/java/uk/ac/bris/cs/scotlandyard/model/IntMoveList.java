@@ -0,0 +1,134 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A growable list of moves encoded with {@link IntMove}, backed by an int array. Meant to be
+ * cleared and refilled, e.g one list per search ply, so that generating moves allocates nothing
+ * once the array has grown large enough.
+ */
+public final class IntMoveList {
+
+	private int[] moves;
+	private int size;
+
+	/**
+	 * Creates an empty list with room for the moves of a typical turn
+	 */
+	public IntMoveList() { this(64); }
+
+	/**
+	 * @param capacity the initial capacity
+	 */
+	public IntMoveList(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("Negative capacity: " + capacity);
+		this.moves = new int[capacity];
+	}
+
+	/**
+	 * @param generator the generator
+	 * @return a new list of all moves of the generator
+	 */
+	@Nonnull public static IntMoveList of(@Nonnull MoveGenerator generator) {
+		var list = new IntMoveList();
+		list.addAll(generator);
+		return list;
+	}
+
+	/**
+	 * @return the number of moves
+	 */
+	public int size() { return size; }
+
+	/**
+	 * @return whether there are no moves
+	 */
+	public boolean isEmpty() { return size == 0; }
+
+	/**
+	 * @param index the index, less than {@link #size()}
+	 * @return the encoded move
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+		return moves[index];
+	}
+
+	/**
+	 * @param index the index, less than {@link #size()}
+	 * @param move the encoded move
+	 */
+	public void set(int index, int move) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+		moves[index] = move;
+	}
+
+	/**
+	 * Swaps two moves, for ordering moves in place
+	 *
+	 * @param i the index of one move
+	 * @param j the index of the other move
+	 */
+	public void swap(int i, int j) {
+		int move = get(i);
+		moves[i] = get(j);
+		moves[j] = move;
+	}
+
+	/**
+	 * Sorts the moves by their encoding, for merging with other sorted lists
+	 */
+	public void sort() { Arrays.sort(moves, 0, size); }
+
+	/**
+	 * @param move the encoded move
+	 */
+	public void add(int move) {
+		if (size == moves.length) moves = Arrays.copyOf(moves, Math.max(8, size * 2));
+		moves[size++] = move;
+	}
+
+	/**
+	 * Encodes and adds every move of the generator
+	 *
+	 * @param generator the generator
+	 */
+	public void addAll(@Nonnull MoveGenerator generator) {
+		generator.forEachMove(move -> {
+			add(IntMove.of(move));
+			return true;
+		});
+	}
+
+	/**
+	 * @param move the encoded move
+	 * @return whether the list contains the move
+	 */
+	public boolean contains(int move) {
+		for (int i = 0; i < size; i++) if (moves[i] == move) return true;
+		return false;
+	}
+
+	/**
+	 * Removes all moves; the capacity stays
+	 */
+	public void clear() { size = 0; }
+
+	/**
+	 * @return a copy of the moves
+	 */
+	@Nonnull public int[] toArray() { return Arrays.copyOf(moves, size); }
+
+	@Override public String toString() {
+		var builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) builder.append(", ");
+			builder.append(IntMove.toString(moves[i]));
+		}
+		return builder.append(']').toString();
+	}
+}
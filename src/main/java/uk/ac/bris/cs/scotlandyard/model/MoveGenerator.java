@@ -0,0 +1,75 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Optional;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Access to the available moves of a board without materialising
+ * {@link Board#getAvailableMoves()}. Generators stream the same moves the set would contain, so
+ * callers that only need to look at, count or sample moves don't pay for building and hashing
+ * the whole set.
+ */
+public interface MoveGenerator {
+
+	/**
+	 * Receives moves from {@link #forEachMove(MoveConsumer)}
+	 */
+	@FunctionalInterface interface MoveConsumer {
+		/**
+		 * @param move the move
+		 * @return true to receive more moves, false to stop
+		 */
+		boolean accept(@Nonnull Move move);
+	}
+
+	/**
+	 * Hands every available move to the consumer in turn, until it asks to stop
+	 *
+	 * @param consumer the consumer
+	 * @return true if every move was handed over, false if the consumer stopped early
+	 */
+	boolean forEachMove(@Nonnull MoveConsumer consumer);
+
+	/**
+	 * @return the number of available moves, i.e the size of {@link Board#getAvailableMoves()}
+	 */
+	int countMoves();
+
+	/**
+	 * @param random the source of randomness
+	 * @return one of the available moves picked uniformly at random; empty if there are none
+	 */
+	@Nonnull Optional<Move> randomMove(@Nonnull Random random);
+
+	/**
+	 * @param board the board
+	 * @return the board itself if it is a generator, otherwise a generator over its
+	 * {@link Board#getAvailableMoves()}
+	 */
+	@Nonnull static MoveGenerator of(@Nonnull Board board) {
+		if (board instanceof MoveGenerator) return (MoveGenerator) board;
+		return of(board.getAvailableMoves());
+	}
+
+	/**
+	 * @param moves the moves
+	 * @return a generator over the given moves
+	 */
+	@Nonnull static MoveGenerator of(@Nonnull ImmutableSet<Move> moves) {
+		return new MoveGenerator() {
+			@Override public boolean forEachMove(@Nonnull MoveConsumer consumer) {
+				for (Move move : moves) if (!consumer.accept(move)) return false;
+				return true;
+			}
+			@Override public int countMoves() { return moves.size(); }
+			@Nonnull @Override public Optional<Move> randomMove(@Nonnull Random random) {
+				if (moves.isEmpty()) return Optional.empty();
+				return Optional.of(moves.asList().get(random.nextInt(moves.size())));
+			}
+		};
+	}
+}
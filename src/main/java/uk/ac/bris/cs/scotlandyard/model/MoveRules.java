@@ -0,0 +1,521 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator.MoveConsumer;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Move generation rules shared by the game state implementations. Everything works on
+ * primitives: stations, {@link Bitboard}s of detective occupancy and ticket bitmasks where bit
+ * {@code t.ordinal()} is set if the player holds the {@link Ticket} {@code t}.
+ */
+final class MoveRules {
+
+	private MoveRules() {}
+
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	/**
+	 * @param ticket the ticket
+	 * @return the bit of the ticket in a ticket bitmask
+	 */
+	static int bit(@Nonnull Ticket ticket) { return 1 << ticket.ordinal(); }
+
+	/**
+	 * @param player the player
+	 * @return a bitmask of all tickets the player has
+	 */
+	static int held(@Nonnull Player player) {
+		int mask = 0;
+		for (Ticket ticket : TICKETS) if (player.has(ticket)) mask |= bit(ticket);
+		return mask;
+	}
+
+	/**
+	 * @param player the player
+	 * @return a bitmask of all tickets the player has at least two of
+	 */
+	static int pairs(@Nonnull Player player) {
+		int mask = 0;
+		for (Ticket ticket : TICKETS) if (player.hasAtLeast(ticket, 2)) mask |= bit(ticket);
+		return mask;
+	}
+
+	/**
+	 * @param packed packed ticket counts, see {@link Tickets}
+	 * @param count the required count
+	 * @return a bitmask of all tickets with at least count left
+	 */
+	static int atLeast(long packed, int count) {
+		int mask = 0;
+		for (Ticket ticket : TICKETS) if (Tickets.count(packed, ticket) >= count) mask |= bit(ticket);
+		return mask;
+	}
+
+	// transport slots of the compact graph, CompactGraph.ANY last
+	private static final int SLOTS = CompactGraph.ANY + 1;
+
+	/**
+	 * @return the ticket the piece pays with for moves along the slot's edges, null if it can't
+	 * use the slot with the tickets it holds
+	 */
+	private static Ticket slotTicket(Piece piece, int slot, int tickets) {
+		Ticket ticket;
+		if (slot == CompactGraph.ANY) {
+			// MrX's secret tickets work on any transport...
+			if (!piece.isMrX()) return null;
+			ticket = Ticket.SECRET;
+		} else {
+			ticket = CompactGraph.transport(slot).requiredTicket();
+			// ...so the ferry slot would only repeat some of them
+			if (ticket == Ticket.SECRET && piece.isMrX()) return null;
+		}
+		return (tickets & bit(ticket)) != 0 ? ticket : null;
+	}
+
+	/**
+	 * Adds all single moves from the source to stations not occupied by detectives
+	 *
+	 * @param moves the collection to add the moves to
+	 * @param table the move table of the graph
+	 * @param occupied the stations occupied by detectives
+	 * @param piece the piece moving
+	 * @param source the source station, must be part of the graph
+	 * @param tickets the bitmask of tickets the piece holds
+	 */
+	static void addSingleMoves(@Nonnull Collection<? super SingleMove> moves,
+	                           @Nonnull MoveTable table,
+	                           @Nonnull long[] occupied,
+	                           @Nonnull Piece piece,
+	                           int source,
+	                           int tickets) {
+		forEachSingleMove(move -> {
+			moves.add((SingleMove) move);
+			return true;
+		}, table, occupied, piece, source, tickets);
+	}
+
+	// single moves come slot by slot, each slot's destinations in ascending order
+	private static boolean forEachSingleMove(MoveConsumer consumer,
+	                                         MoveTable table,
+	                                         long[] occupied,
+	                                         Piece piece,
+	                                         int source,
+	                                         int tickets) {
+		var graph = table.graph();
+		graph.firstEdge(source); // rejects stations that aren't on the map
+		for (int slot = 0; slot < SLOTS; slot++) {
+			Ticket ticket = slotTicket(piece, slot, tickets);
+			if (ticket == null) continue;
+			// every free neighbour reachable with the transport, i.e. neighbours & ~occupied
+			for (int w = 0; w < occupied.length; w++) {
+				long free = graph.neighbours(source, slot, w) & ~occupied[w];
+				while (free != 0) {
+					int destination = (w << 6) + Long.numberOfTrailingZeros(free);
+					free &= free - 1;
+					if (!consumer.accept(table.single(piece, source, ticket, destination)))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int countSingleMoves(CompactGraph graph,
+	                                    long[] occupied,
+	                                    Piece piece,
+	                                    int source,
+	                                    int tickets) {
+		graph.firstEdge(source);
+		int count = 0;
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (slotTicket(piece, slot, tickets) == null) continue;
+			for (int w = 0; w < occupied.length; w++)
+				count += Long.bitCount(graph.neighbours(source, slot, w) & ~occupied[w]);
+		}
+		return count;
+	}
+
+	// the move forEachSingleMove hands over in position n, without making the others
+	private static SingleMove nthSingleMove(MoveTable table,
+	                                        long[] occupied,
+	                                        Piece piece,
+	                                        int source,
+	                                        int tickets,
+	                                        int n) {
+		var graph = table.graph();
+		for (int slot = 0; slot < SLOTS; slot++) {
+			Ticket ticket = slotTicket(piece, slot, tickets);
+			if (ticket == null) continue;
+			for (int w = 0; w < occupied.length; w++) {
+				long free = graph.neighbours(source, slot, w) & ~occupied[w];
+				int count = Long.bitCount(free);
+				if (n < count) {
+					for (; n > 0; n--) free &= free - 1;
+					return table.single(piece, source, ticket,
+							(w << 6) + Long.numberOfTrailingZeros(free));
+				}
+				n -= count;
+			}
+		}
+		throw new IndexOutOfBoundsException("Not enough single moves from " + source);
+	}
+
+	/**
+	 * @param graph the compact graph
+	 * @param occupied the stations occupied by detectives
+	 * @param piece the piece moving
+	 * @param source the source station, must be part of the graph
+	 * @param tickets the bitmask of tickets the piece holds
+	 * @return whether {@link #addSingleMoves} would add at least one move; stops at the first
+	 */
+	static boolean hasSingleMove(@Nonnull CompactGraph graph,
+	                             @Nonnull long[] occupied,
+	                             @Nonnull Piece piece,
+	                             int source,
+	                             int tickets) {
+		graph.firstEdge(source);
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (slotTicket(piece, slot, tickets) == null) continue;
+			for (int w = 0; w < occupied.length; w++)
+				if ((graph.neighbours(source, slot, w) & ~occupied[w]) != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds all of MrX's single moves and, if he has a double ticket and there are at least two
+	 * rounds left, all of his double moves
+	 *
+	 * @param moves the collection to add the moves to
+	 * @param setup the game setup
+	 * @param occupied the stations occupied by detectives
+	 * @param mrX MrX's piece
+	 * @param source MrX's location
+	 * @param tickets the bitmask of tickets MrX holds
+	 * @param pairs the bitmask of tickets MrX holds at least two of
+	 * @param round the number of rounds already played, i.e the size of the travel log
+	 */
+	static void addMrXMoves(@Nonnull Collection<? super Move> moves,
+	                        @Nonnull GameSetup setup,
+	                        @Nonnull long[] occupied,
+	                        @Nonnull Piece mrX,
+	                        int source,
+	                        int tickets,
+	                        int pairs,
+	                        int round) {
+		forEachMrXMove(move -> {
+			moves.add(move);
+			return true;
+		}, setup, occupied, mrX, source, tickets, pairs, round);
+	}
+
+	private static boolean canDouble(GameSetup setup, int tickets, int round) {
+		return (tickets & bit(Ticket.DOUBLE)) != 0 && setup.rounds.size() - round >= 2;
+	}
+
+	// the tickets left for the second half of a double move; the same ticket twice needs two
+	private static int secondTickets(Ticket first, int tickets, int pairs) {
+		return (pairs & bit(first)) != 0 ? tickets : tickets & ~bit(first);
+	}
+
+	// all single moves, then the double moves grouped by their first half in single move order
+	private static boolean forEachMrXMove(MoveConsumer consumer,
+	                                      GameSetup setup,
+	                                      long[] occupied,
+	                                      Piece mrX,
+	                                      int source,
+	                                      int tickets,
+	                                      int pairs,
+	                                      int round) {
+		var table = setup.moveTable();
+		var graph = table.graph();
+		if (!forEachSingleMove(consumer, table, occupied, mrX, source, tickets)) return false;
+		if (!canDouble(setup, tickets, round)) return true;
+		for (int slot = 0; slot < SLOTS; slot++) {
+			Ticket first = slotTicket(mrX, slot, tickets);
+			if (first == null) continue;
+			int seconds = secondTickets(first, tickets, pairs);
+			for (int w = 0; w < occupied.length; w++) {
+				long free = graph.neighbours(source, slot, w) & ~occupied[w];
+				while (free != 0) {
+					int middle = (w << 6) + Long.numberOfTrailingZeros(free);
+					free &= free - 1;
+					boolean more = forEachSingleMove(second -> consumer.accept(table.twice(mrX,
+							source, first, middle,
+							((SingleMove) second).ticket, ((SingleMove) second).destination)),
+							table, occupied, mrX, middle, seconds);
+					if (!more) return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int countMrXMoves(GameSetup setup,
+	                                 long[] occupied,
+	                                 Piece mrX,
+	                                 int source,
+	                                 int tickets,
+	                                 int pairs,
+	                                 int round) {
+		var graph = setup.compactGraph();
+		int count = countSingleMoves(graph, occupied, mrX, source, tickets);
+		if (!canDouble(setup, tickets, round)) return count;
+		for (int slot = 0; slot < SLOTS; slot++) {
+			Ticket first = slotTicket(mrX, slot, tickets);
+			if (first == null) continue;
+			int seconds = secondTickets(first, tickets, pairs);
+			for (int w = 0; w < occupied.length; w++) {
+				long free = graph.neighbours(source, slot, w) & ~occupied[w];
+				while (free != 0) {
+					int middle = (w << 6) + Long.numberOfTrailingZeros(free);
+					free &= free - 1;
+					count += countSingleMoves(graph, occupied, mrX, middle, seconds);
+				}
+			}
+		}
+		return count;
+	}
+
+	// whole groups of double moves are skipped by their count, only the wanted one is made
+	private static Move nthMrXMove(GameSetup setup,
+	                               long[] occupied,
+	                               Piece mrX,
+	                               int source,
+	                               int tickets,
+	                               int pairs,
+	                               int round,
+	                               int n) {
+		var table = setup.moveTable();
+		var graph = table.graph();
+		int singles = countSingleMoves(graph, occupied, mrX, source, tickets);
+		if (n < singles) return nthSingleMove(table, occupied, mrX, source, tickets, n);
+		n -= singles;
+		if (canDouble(setup, tickets, round)) {
+			for (int slot = 0; slot < SLOTS; slot++) {
+				Ticket first = slotTicket(mrX, slot, tickets);
+				if (first == null) continue;
+				int seconds = secondTickets(first, tickets, pairs);
+				for (int w = 0; w < occupied.length; w++) {
+					long free = graph.neighbours(source, slot, w) & ~occupied[w];
+					while (free != 0) {
+						int middle = (w << 6) + Long.numberOfTrailingZeros(free);
+						free &= free - 1;
+						int count = countSingleMoves(graph, occupied, mrX, middle, seconds);
+						if (n < count) {
+							var second = nthSingleMove(table, occupied, mrX, middle, seconds, n);
+							return table.twice(mrX, source, first, middle,
+									second.ticket, second.destination);
+						}
+						n -= count;
+					}
+				}
+			}
+		}
+		throw new IndexOutOfBoundsException("Not enough moves for MrX from " + source);
+	}
+
+	/**
+	 * A game position as seen by the move generators below. Pieces are indexed with MrX at 0
+	 * followed by the detectives; it is MrX's turn if he is still to move.
+	 */
+	interface Position {
+		/**
+		 * @return the game setup
+		 */
+		@Nonnull GameSetup setup();
+		/**
+		 * @return the stations occupied by detectives
+		 */
+		@Nonnull long[] occupied();
+		/**
+		 * @return the number of rounds already played, i.e the size of the travel log
+		 */
+		int round();
+		/**
+		 * @return the number of pieces, MrX included
+		 */
+		int pieceCount();
+		/**
+		 * @param index the piece index
+		 * @return the piece
+		 */
+		@Nonnull Piece piece(int index);
+		/**
+		 * @param index the piece index
+		 * @return the location of the piece
+		 */
+		int location(int index);
+		/**
+		 * @param index the piece index
+		 * @return the bitmask of tickets the piece holds
+		 */
+		int held(int index);
+		/**
+		 * @param index the piece index
+		 * @return the bitmask of tickets the piece holds at least two of
+		 */
+		int pairs(int index);
+		/**
+		 * @param index the piece index
+		 * @return whether the piece is still to move this round
+		 */
+		boolean isRemaining(int index);
+	}
+
+	/**
+	 * Hands the available moves of the position to the consumer, ignoring whether the game has
+	 * been won. The order is fixed and the same as {@link #nthMove(Position, int)}'s: MrX's single
+	 * moves then his double moves, or each remaining detective's single moves in index order.
+	 *
+	 * @param position the position
+	 * @param consumer the consumer
+	 * @return false if the consumer stopped early
+	 */
+	static boolean forEachMove(@Nonnull Position position, @Nonnull MoveConsumer consumer) {
+		if (position.isRemaining(0)) {
+			return forEachMrXMove(consumer, position.setup(), position.occupied(),
+					position.piece(0), position.location(0),
+					position.held(0), position.pairs(0), position.round());
+		}
+		var table = position.setup().moveTable();
+		for (int i = 1; i < position.pieceCount(); i++) {
+			if (position.isRemaining(i) && !forEachSingleMove(consumer, table, position.occupied(),
+					position.piece(i), position.location(i), position.held(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param position the position
+	 * @return the number of moves {@link #forEachMove(Position, MoveConsumer)} hands over; no
+	 * moves are made
+	 */
+	static int countMoves(@Nonnull Position position) {
+		if (position.isRemaining(0)) {
+			return countMrXMoves(position.setup(), position.occupied(),
+					position.piece(0), position.location(0),
+					position.held(0), position.pairs(0), position.round());
+		}
+		var graph = position.setup().compactGraph();
+		int count = 0;
+		for (int i = 1; i < position.pieceCount(); i++) {
+			if (position.isRemaining(i)) count += countSingleMoves(graph, position.occupied(),
+					position.piece(i), position.location(i), position.held(i));
+		}
+		return count;
+	}
+
+	/**
+	 * @param position the position
+	 * @param n the index of the move, less than {@link #countMoves(Position)}
+	 * @return the n-th move {@link #forEachMove(Position, MoveConsumer)} would hand over; only
+	 * that move is made
+	 * @throws IndexOutOfBoundsException if there are not enough moves
+	 */
+	@Nonnull static Move nthMove(@Nonnull Position position, int n) {
+		if (n < 0) throw new IndexOutOfBoundsException("Negative move index: " + n);
+		if (position.isRemaining(0)) {
+			return nthMrXMove(position.setup(), position.occupied(),
+					position.piece(0), position.location(0),
+					position.held(0), position.pairs(0), position.round(), n);
+		}
+		var table = position.setup().moveTable();
+		for (int i = 1; i < position.pieceCount(); i++) {
+			if (!position.isRemaining(i)) continue;
+			int count = countSingleMoves(table.graph(), position.occupied(),
+					position.piece(i), position.location(i), position.held(i));
+			if (n < count) return nthSingleMove(table, position.occupied(),
+					position.piece(i), position.location(i), position.held(i), n);
+			n -= count;
+		}
+		throw new IndexOutOfBoundsException("Not enough detective moves");
+	}
+
+	/**
+	 * @param position the position
+	 * @param random the source of randomness
+	 * @return one of the position's moves picked uniformly at random; empty if there are none
+	 */
+	@Nonnull static Optional<Move> randomMove(@Nonnull Position position, @Nonnull Random random) {
+		int count = countMoves(position);
+		if (count == 0) return Optional.empty();
+		return Optional.of(nthMove(position, random.nextInt(count)));
+	}
+
+	// whether forEachSingleMove would hand over the move, without making any
+	private static boolean hasSingleMove(CompactGraph graph,
+	                                     long[] occupied,
+	                                     Piece piece,
+	                                     int source,
+	                                     int tickets,
+	                                     Ticket ticket,
+	                                     int destination) {
+		if (!graph.contains(destination) || Bitboard.contains(occupied, destination)) return false;
+		int word = destination >> 6;
+		long bit = 1L << destination;
+		for (int slot = 0; slot < SLOTS; slot++) {
+			if (slotTicket(piece, slot, tickets) == ticket
+					&& (graph.neighbours(source, slot, word) & bit) != 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks a move against the rules directly: whose turn it is, where the piece is, the edge
+	 * and its transport, the tickets held, the stations occupied by detectives and, for double
+	 * moves, the rounds left. Like {@link #forEachMove(Position, MoveConsumer)}, whether the game
+	 * has been won is ignored.
+	 *
+	 * @param position the position
+	 * @param move the move, may be null
+	 * @return whether {@link #forEachMove(Position, MoveConsumer)} would hand over the move; no
+	 * moves are made
+	 */
+	static boolean isLegal(@Nonnull Position position, Move move) {
+		if (move == null) return false;
+		int index = 0;
+		while (index < position.pieceCount() && position.piece(index) != move.commencedBy()) index++;
+		if (index == position.pieceCount() || !position.isRemaining(index)) return false;
+		// while MrX is still to move it's his turn
+		if (index != 0 && position.isRemaining(0)) return false;
+		int source = position.location(index);
+		if (move.source() != source) return false;
+		var graph = position.setup().compactGraph();
+		var occupied = position.occupied();
+		int tickets = position.held(index);
+		if (move instanceof SingleMove) {
+			var single = (SingleMove) move;
+			return hasSingleMove(graph, occupied, move.commencedBy(), source, tickets,
+					single.ticket, single.destination);
+		}
+		var twice = (DoubleMove) move;
+		return index == 0
+				&& canDouble(position.setup(), tickets, position.round())
+				&& hasSingleMove(graph, occupied, twice.commencedBy(), source, tickets,
+						twice.ticket1, twice.destination1)
+				&& hasSingleMove(graph, occupied, twice.commencedBy(), twice.destination1,
+						secondTickets(twice.ticket1, tickets, position.pairs(index)),
+						twice.ticket2, twice.destination2);
+	}
+
+	/**
+	 * @param graph the compact graph
+	 * @param locations the stations to mark
+	 * @return a bitboard of the given stations that are part of the graph
+	 */
+	@Nonnull static long[] occupied(@Nonnull CompactGraph graph, @Nonnull int... locations) {
+		var occupied = Bitboard.empty(graph.maxNode());
+		for (int location : locations) if (graph.contains(location)) Bitboard.set(occupied, location);
+		return occupied;
+	}
+}
@@ -0,0 +1,112 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+import uk.ac.bris.cs.scotlandyard.model.Piece.MrX;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Shared {@link Move} instances for one {@link CompactGraph}, so that generating moves hands out
+ * the same objects turn after turn instead of allocating new ones.
+ * <br>
+ * Every single move of a piece in {@link ScotlandYard#ALL_PIECES} along an edge of the graph is
+ * made up front; MrX's double moves are made on first use. Moves that don't fit the table, like
+ * moves of other pieces or along edges that don't exist, are made fresh, so the methods here
+ * can stand in for the {@link Move} constructors anywhere.
+ * <br>
+ * Use {@link GameSetup#moveTable()} rather than building one directly. Tables are safe to share
+ * between threads.
+ */
+public final class MoveTable {
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Piece[] PIECES = ScotlandYard.ALL_PIECES.toArray(new Piece[0]);
+
+	private final CompactGraph graph;
+	// (piece * edges + edge) * TICKETS.length + ticket, null where the ticket can't pay for the edge
+	private final SingleMove[] singles;
+	// MrX's double moves by the edge and ticket of the first half; each array holds the second
+	// halves by the edge's position among the middle station's edges and ticket. Threads racing
+	// to fill a slot make equal moves, so whichever write wins is fine.
+	private final DoubleMove[][] doubles;
+
+	MoveTable(@Nonnull CompactGraph graph) {
+		this.graph = graph;
+		int edges = graph.edgeCount();
+		this.singles = new SingleMove[PIECES.length * edges * TICKETS.length];
+		this.doubles = new DoubleMove[edges * TICKETS.length][];
+		for (int piece = 0; piece < PIECES.length; piece++) {
+			for (int source = 0; source <= graph.maxNode(); source++) {
+				if (!graph.contains(source)) continue;
+				for (int edge = graph.firstEdge(source); edge < graph.lastEdge(source); edge++) {
+					for (Ticket ticket : TICKETS) {
+						if (!pays(PIECES[piece], ticket, graph.transports(edge))) continue;
+						singles[(piece * edges + edge) * TICKETS.length + ticket.ordinal()] =
+								new SingleMove(PIECES[piece], source, ticket, graph.target(edge));
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean pays(Piece piece, Ticket ticket, int transports) {
+		if (ticket == Ticket.SECRET && piece.isMrX()) return true;
+		for (int t = 0; t < CompactGraph.TRANSPORT_COUNT; t++) {
+			if ((transports & (1 << t)) != 0 && CompactGraph.transport(t).requiredTicket() == ticket)
+				return true;
+		}
+		return false;
+	}
+
+	private static int pieceIndex(Piece piece) {
+		for (int i = 0; i < PIECES.length; i++) if (PIECES[i] == piece) return i;
+		return -1;
+	}
+
+	/**
+	 * @return the graph the moves are along
+	 */
+	@Nonnull public CompactGraph graph() { return graph; }
+
+	/**
+	 * @return a single move equal to {@code new SingleMove(piece, source, ticket, destination)},
+	 * shared if it is in the table
+	 */
+	@Nonnull public SingleMove single(@Nonnull Piece piece, int source,
+	                                  @Nonnull Ticket ticket, int destination) {
+		int index = pieceIndex(piece);
+		int edge = graph.edge(source, destination);
+		if (index >= 0 && edge >= 0) {
+			var move = singles[(index * graph.edgeCount() + edge) * TICKETS.length + ticket.ordinal()];
+			if (move != null) return move;
+		}
+		return new SingleMove(piece, source, ticket, destination);
+	}
+
+	/**
+	 * @return a double move equal to
+	 * {@code new DoubleMove(piece, source, ticket1, destination1, ticket2, destination2)}, shared
+	 * if it is in the table
+	 */
+	@Nonnull public DoubleMove twice(@Nonnull Piece piece, int source,
+	                                 @Nonnull Ticket ticket1, int destination1,
+	                                 @Nonnull Ticket ticket2, int destination2) {
+		int first = graph.edge(source, destination1);
+		int second = graph.edge(destination1, destination2);
+		if (piece != MrX.MRX || first < 0 || second < 0)
+			return new DoubleMove(piece, source, ticket1, destination1, ticket2, destination2);
+		int slot = first * TICKETS.length + ticket1.ordinal();
+		var seconds = doubles[slot];
+		if (seconds == null)
+			doubles[slot] = seconds = new DoubleMove[graph.degree(destination1) * TICKETS.length];
+		int index = (second - graph.firstEdge(destination1)) * TICKETS.length + ticket2.ordinal();
+		var move = seconds[index];
+		if (move == null) {
+			seconds[index] = move = new DoubleMove(piece, source,
+					ticket1, destination1, ticket2, destination2);
+		}
+		return move;
+	}
+}
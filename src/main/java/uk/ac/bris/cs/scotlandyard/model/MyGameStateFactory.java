@@ -20,88 +20,49 @@ public final class MyGameStateFactory implements Factory<GameState> {
     @Nonnull
     @Override
     public GameState build(GameSetup setup, Player mrX, ImmutableList<Player> detectives) {
-        return new MyGameState(setup, ImmutableSet.of(mrX.piece()), ImmutableList.of(), mrX, detectives);
+        return new MyGameState(setup, ImmutableSet.of(mrX.piece()), TravelLog.EMPTY, mrX, detectives, null,
+                startKey(mrX, detectives));
+    }
+
+    // the Zobrist key of the first round, where only Mr. X is to move
+    private static long startKey(Player mrX, List<Player> detectives) {
+        long key = Zobrist.round(0) ^ Zobrist.remaining(mrX.piece()) ^ Zobrist.of(mrX);
+        for (Player d : detectives) key ^= Zobrist.of(d);
+        return key;
     }
 
     private static ImmutableSet<Move> makeMoves(
             final GameSetup setup,
             final Player mrX,
             final List<Player> detectives,
+            final long[] occupied,
             final ImmutableSet<Piece> remaining,
-            final ImmutableList<LogEntry> log
+            final TravelLog log
             ) {
         final ArrayList<Move> moves = new ArrayList<>();
 
         // if it's Mr. X's turn to play...
         if (remaining.contains(mrX.piece())) {
-            // single moves
-            final ImmutableSet<SingleMove> mrXSingleMoves = makeSingleMoves(setup, detectives, mrX, mrX.location());
-            moves.addAll(mrXSingleMoves);
-
-            // if Mr. X has a double ticket and there's enough time left in the game to make a double move
-            // loop over single moves to determine double moves
-            if (mrX.has(Ticket.DOUBLE) && setup.rounds.size() - log.size() >= 2) {
-                for (SingleMove m : mrXSingleMoves) {
-                    final ImmutableSet<SingleMove> doubleMoves = makeSingleMoves(setup, detectives, mrX, m.destination);
-                    for (SingleMove m2: doubleMoves) {
-                        final Ticket ticket1 = Iterables.getFirst(m.tickets(), null);
-                        final Ticket ticket2 = Iterables.getFirst(m2.tickets(), null);
-                        // make sure Mr. X has the tickets required - makeSingleMoves already checks that
-                        // the player has a ticket of the required type, but if both are the same type
-                        // we need to make sure Mr. X has two of them
-                        if (ticket1 != ticket2 || mrX.hasAtLeast(ticket1, 2)) {
-                            moves.add(new DoubleMove(mrX.piece(), mrX.location(), ticket1, m.destination, ticket2, m2.destination));
-                        }
-                    }
-                }
-            }
+            // single moves, and double moves if Mr. X has a double ticket and there's enough time left
+            MoveRules.addMrXMoves(moves, setup, occupied, mrX.piece(), mrX.location(),
+                    MoveRules.held(mrX), MoveRules.pairs(mrX), log.size());
         }
         // if it's the detectives' turn to play...
         else {
             for (Player d : detectives) {
                 // if the detective has already played this round, they don't have any moves left this round -> skip
                 if (!remaining.contains(d.piece())) continue;
-                final ImmutableSet<SingleMove> detectiveMoves = makeSingleMoves(setup, detectives, d, d.location());
-                moves.addAll(detectiveMoves);
+                MoveRules.addSingleMoves(moves, setup.moveTable(), occupied, d.piece(), d.location(), MoveRules.held(d));
             }
         }
 
         return ImmutableSet.copyOf(moves);
     }
 
-    private static ImmutableSet<SingleMove> makeSingleMoves(
-            GameSetup setup,
-            List<Player> detectives,
-            Player player,
-            int source
-    ) {
-        final ArrayList<SingleMove> singleMoves = new ArrayList<SingleMove>();
-        for (int destination : setup.graph.adjacentNodes(source)) {
-            //  If the destination is occupied by a detective, skip
-            boolean isOccupied = false;
-            for (Player p : detectives) {
-                if (p.location() == destination) {
-                    isOccupied = true;
-                    break;
-                }
-            }
-            if (isOccupied) continue;
-
-            //  If the player has a ticket that allows them to go to destination,
-            //  add the move to the array
-            for (Transport t : setup.graph.edgeValueOrDefault(source, destination, ImmutableSet.of())) {
-                final Ticket ticket = t.requiredTicket();
-                if (player.has(ticket)) {
-                    singleMoves.add(new SingleMove(player.piece(), source, ticket, destination));
-                }
-            }
-            // if it's Mr. X and he still has a secret ticket
-            if (player.isMrX() && player.has(Ticket.SECRET)) {
-                singleMoves.add(new SingleMove(player.piece(), source, Ticket.SECRET, destination));
-            }
-        }
-
-        return ImmutableSet.copyOf(singleMoves);
+    private static long[] occupiedBy(GameSetup setup, List<Player> detectives) {
+        final int[] locations = new int[detectives.size()];
+        for (int i = 0; i < locations.length; i++) locations[i] = detectives.get(i).location();
+        return MoveRules.occupied(setup.compactGraph(), locations);
     }
 
     private static ImmutableSet<Piece> playersToPieceSet(List<Player> detectives) {
@@ -122,11 +83,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
         // if none of the detectives have any tickets left, Mr. X wins
         boolean detectivesHaveTickets = false;
         for (Player d : gameState.detectives) {
-            boolean dHasAnyTickets = false;
-            for (Ticket t : d.tickets().keySet()) {
-                if (d.has(t)) dHasAnyTickets = true;
-            }
-            if (dHasAnyTickets) {
+            if (Tickets.any(d.packedTickets())) {
                 detectivesHaveTickets = true;
                 break;
             }
@@ -138,15 +95,21 @@ public final class MyGameStateFactory implements Factory<GameState> {
         if (gameState.setup.rounds.size() == gameState.log.size() && gameState.remaining.contains(gameState.mrX.piece())) {
             return ImmutableSet.of(gameState.mrX.piece());
         }
+        // only whether any move exists matters here, so stop at the first one instead of making them all
+        final CompactGraph graph = gameState.setup.compactGraph();
         // if it's the turn of the Mr. X and he can't make any moves, the detectives win
+        // (he can't have a double move without a single move)
         if (gameState.remaining.contains(gameState.mrX.piece())) {
-            if (gameState.moves.isEmpty()) return playersToPieceSet(gameState.detectives);
+            final Player mrX = gameState.mrX;
+            if (!MoveRules.hasSingleMove(graph, gameState.occupied, mrX.piece(), mrX.location(), MoveRules.held(mrX)))
+                return playersToPieceSet(gameState.detectives);
         }
         else {
             // if it's the turn of the detectives and they can't make any moves, Mr. X wins
             boolean detectivesHaveMoves = false;
-            for (Move m : gameState.moves) {
-                if (m.commencedBy().isDetective()) {
+            for (Player d : gameState.detectives) {
+                if (gameState.remaining.contains(d.piece())
+                        && MoveRules.hasSingleMove(graph, gameState.occupied, d.piece(), d.location(), MoveRules.held(d))) {
                     detectivesHaveMoves = true;
                     break;
                 }
@@ -158,22 +121,73 @@ public final class MyGameStateFactory implements Factory<GameState> {
         return ImmutableSet.of();
     }
 
-    private final class MyGameState implements GameState {
+    // for benchmarks: a state's winner and moves worked out again, whatever it has stored
+    ImmutableSet<Piece> determineWinner(GameState state) {
+        return determineWinner((MyGameState) state);
+    }
+
+    static ImmutableSet<Move> makeMoves(GameState state) {
+        final MyGameState s = (MyGameState) state;
+        return makeMoves(s.setup, s.mrX, s.detectives, s.occupied, s.remaining, s.log);
+    }
+
+    static void checkParameters(GameSetup setup, Player mrX, List<Player> detectives) {
+        if (setup.rounds.isEmpty()) throw new IllegalArgumentException("Rounds is empty");
+
+        if (setup.graph.nodes().isEmpty()) throw new IllegalArgumentException("Graph is empty");
+
+        if (mrX == null) throw new NullPointerException("MrX is empty!");
+
+        if (!mrX.piece().webColour().equals("#000"))
+            throw new IllegalArgumentException("MrX must be a black piece");
+
+        if (detectives.isEmpty()) throw new IllegalArgumentException("Detectives is empty");
+
+        for (int i = 0; i < detectives.size(); i++){
+            Player p = detectives.get(i);
+            if (p == null) throw new IllegalArgumentException("One or more detectives are null");
+
+            if (p.isDetective() && p.tickets().get(Ticket.DOUBLE) != 0)
+                throw new IllegalArgumentException("One or more detectives has a double ticket");
+
+            if (p.isDetective() && p.tickets().get(Ticket.SECRET) != 0)
+                throw new IllegalArgumentException("One or more detectives has a secret ticket");
+
+            if (p.isMrX()) throw new IllegalArgumentException("There can only be one MrX");
+
+            for (int j = i + 1; j < detectives.size(); j++){
+                if (p.location() == detectives.get(j).location()) {
+                    throw new IllegalArgumentException("Two players have the same location");
+                }
+            }
+        }
+    }
+
+    private final class MyGameState
+            implements GameState, MoveGenerator, MoveRules.Position, ImmutableBoard.PlayerBoard {
         private GameSetup setup;
         private ImmutableSet<Piece> remaining;
-        private ImmutableList<LogEntry> log;
+        // shares its entries with the log of the state before
+        private TravelLog log;
         private Player mrX;
         private List<Player> detectives;
+        // stations taken by detectives; shared between states until a detective moves
+        private long[] occupied;
         private ImmutableList<Player> everyone;
+        // made on first request by getAvailableMoves, many states are only advanced or checked for a winner
         private ImmutableSet<Move> moves;
         private ImmutableSet<Piece> winner;
+        // kept up to date by advance instead of being computed from scratch
+        private long key;
 
         private MyGameState(
                 final GameSetup setup,
                 final ImmutableSet<Piece> remaining,
-                final ImmutableList<LogEntry> log,
+                final TravelLog log,
                 final Player mrX,
-                final List<Player> detectives) {
+                final List<Player> detectives,
+                final long[] occupied,
+                final long key) {
             checkParameters(setup, mrX, detectives);
 
             //Build remaining and everyone lists
@@ -188,43 +202,12 @@ public final class MyGameStateFactory implements Factory<GameState> {
             this.mrX = mrX;
             this.detectives = detectives;
             this.everyone = everyoneBuilder.build();
-            this.moves = makeMoves(setup, mrX, detectives, remaining, log);
+            this.occupied = occupied != null ? occupied : occupiedBy(setup, detectives);
+            this.key = key;
             this.winner = determineWinner(this);
             if(!this.winner.isEmpty()) this.moves = ImmutableSet.of();
         }
 
-        void checkParameters(GameSetup setup, Player mrX, List<Player> detectives) {
-            if (setup.rounds.isEmpty()) throw new IllegalArgumentException("Rounds is empty");
-
-            if (setup.graph.nodes().isEmpty()) throw new IllegalArgumentException("Graph is empty");
-
-            if (mrX == null) throw new NullPointerException("MrX is empty!");
-
-            if (!mrX.piece().webColour().equals("#000"))
-                throw new IllegalArgumentException("MrX must be a black piece");
-
-            if (detectives.isEmpty()) throw new IllegalArgumentException("Detectives is empty");
-
-            for (int i = 0; i < detectives.size(); i++){
-                Player p = detectives.get(i);
-                if (p == null) throw new IllegalArgumentException("One or more detectives are null");
-
-                if (p.isDetective() && p.tickets().get(Ticket.DOUBLE) != 0)
-                    throw new IllegalArgumentException("One or more detectives has a double ticket");
-
-                if (p.isDetective() && p.tickets().get(Ticket.SECRET) != 0)
-                    throw new IllegalArgumentException("One or more detectives has a secret ticket");
-
-                if (p.isMrX()) throw new IllegalArgumentException("There can only be one MrX");
-
-                for (int j = i + 1; j < detectives.size(); j++){
-                    if (p.location() == detectives.get(j).location()) {
-                        throw new IllegalArgumentException("Two players have the same location");
-                    }
-                }
-            }
-        }
-
         @Nonnull
         @Override
         public GameSetup getSetup() {
@@ -237,6 +220,12 @@ public final class MyGameStateFactory implements Factory<GameState> {
             return playersToPieceSet(everyone);
         }
 
+        @Nonnull
+        @Override
+        public List<Player> players() {
+            return everyone;
+        }
+
         @Nonnull
         @Override
         public Optional<Integer> getDetectiveLocation(Detective detective) {
@@ -258,7 +247,7 @@ public final class MyGameStateFactory implements Factory<GameState> {
         @Nonnull
         @Override
         public ImmutableList<LogEntry> getMrXTravelLog() {
-            return log;
+            return log.asList();
         }
 
         @Nonnull
@@ -270,38 +259,129 @@ public final class MyGameStateFactory implements Factory<GameState> {
         @Nonnull
         @Override
         public ImmutableSet<Move> getAvailableMoves() {
-            return moves;
+            // racing threads make equal sets, so publishing whichever wins is fine
+            ImmutableSet<Move> available = moves;
+            if (available == null) moves = available = makeMoves(setup, mrX, detectives, occupied, remaining, log);
+            return available;
         }
 
-        ImmutableList<LogEntry> addToLog(ImmutableList<LogEntry> log, Ticket ticket, int destination) {
-            List<LogEntry> newLog = new ArrayList<>(log);
+        @Override
+        public long positionKey() {
+            return key;
+        }
 
-            // if it's Mr. X's reveal round, add both the ticket and destination, else add just the ticket
-            if (setup.rounds.get(newLog.size())) newLog.add(LogEntry.reveal(ticket, destination));
-            else newLog.add(LogEntry.hidden(ticket));
+        @Override
+        public boolean forEachMove(@Nonnull MoveConsumer consumer) {
+            // once the set is made, walking it is cheaper than making the moves again
+            ImmutableSet<Move> available = moves;
+            if (available == null) return MoveRules.forEachMove(this, consumer);
+            for (Move move : available) {
+                if (!consumer.accept(move)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int countMoves() {
+            ImmutableSet<Move> available = moves;
+            return available != null ? available.size() : MoveRules.countMoves(this);
+        }
+
+        @Nonnull
+        @Override
+        public Optional<Move> randomMove(@Nonnull Random random) {
+            ImmutableSet<Move> available = moves;
+            if (available == null) return MoveRules.randomMove(this, random);
+            if (available.isEmpty()) return Optional.empty();
+            return Optional.of(available.asList().get(random.nextInt(available.size())));
+        }
+
+        // the position as seen by MoveRules, with Mr. X at index 0 like in everyone
+        @Nonnull
+        @Override
+        public GameSetup setup() {
+            return setup;
+        }
+
+        @Nonnull
+        @Override
+        public long[] occupied() {
+            return occupied;
+        }
+
+        @Override
+        public int round() {
+            return log.size();
+        }
+
+        @Override
+        public int pieceCount() {
+            return everyone.size();
+        }
 
-            return ImmutableList.copyOf(newLog);
+        @Nonnull
+        @Override
+        public Piece piece(int index) {
+            return everyone.get(index).piece();
+        }
+
+        @Override
+        public int location(int index) {
+            return everyone.get(index).location();
+        }
+
+        @Override
+        public int held(int index) {
+            return MoveRules.held(everyone.get(index));
+        }
+
+        @Override
+        public int pairs(int index) {
+            return MoveRules.pairs(everyone.get(index));
+        }
+
+        @Override
+        public boolean isRemaining(int index) {
+            return remaining.contains(everyone.get(index).piece());
+        }
+
+        TravelLog addToLog(TravelLog log, Ticket ticket, int destination) {
+            // if it's Mr. X's reveal round, add both the ticket and destination, else add just the ticket
+            if (setup.rounds.get(log.size())) return log.append(LogEntry.reveal(ticket, destination));
+            else return log.append(LogEntry.hidden(ticket));
         }
 
-        ImmutableList<LogEntry> addSingleMoveToLog(ImmutableList<LogEntry> log, Move move) {
+        TravelLog addSingleMoveToLog(TravelLog log, Move move) {
             SingleMove sm = (SingleMove) move;
             return addToLog(log, Iterables.getFirst(move.tickets(), null), sm.destination);
         }
 
-        ImmutableList<LogEntry> addDoubleMoveToLog(ImmutableList<LogEntry> log, Move move) {
+        TravelLog addDoubleMoveToLog(TravelLog log, Move move) {
             DoubleMove dm = (DoubleMove) move;
-            final ImmutableList<LogEntry> logWithFirstMove = addToLog(log, dm.ticket1, dm.destination1);
+            final TravelLog logWithFirstMove = addToLog(log, dm.ticket1, dm.destination1);
             return addToLog(logWithFirstMove, dm.ticket2, dm.destination2);
         }
 
+        @Override
+        public boolean isLegal(Move move) {
+            // checked against the rules, so the move set doesn't have to be made
+            return winner.isEmpty() && MoveRules.isLegal(this, move);
+        }
+
         @Override
         public GameState advance(Move move) {
-            if (!moves.contains(move)) throw new IllegalArgumentException("Illegal move: " + move);
+            if (!isLegal(move)) throw new IllegalArgumentException("Illegal move: " + move);
+            return advanceUnchecked(move);
+        }
 
+        @Nonnull
+        @Override
+        public GameState advanceUnchecked(Move move) {
             List<Piece> newRemaining = new ArrayList<>(remaining);
-            ImmutableList<LogEntry> newLog = log;
+            TravelLog newLog = log;
             Player newMrX = mrX;
             List<Player> newDetectives = new ArrayList<>(detectives);
+            long[] newOccupied = occupied;
             newRemaining.remove(move.commencedBy());
 
             // if Mr. X is the one that moved...
@@ -314,18 +394,14 @@ public final class MyGameStateFactory implements Factory<GameState> {
                 newMrX = newMrX.at(destination); // move Mr. X to destination
                 newMrX = newMrX.use(move.tickets()); // remove the ticket(s)
                 // add moves to log
-                newLog = move.visit(new FunctionalVisitor<ImmutableList<LogEntry>>(
+                newLog = move.visit(new FunctionalVisitor<TravelLog>(
                         m -> addSingleMoveToLog(log, move),
                         m -> addDoubleMoveToLog(log, move)
                 ));
 
                 // remaining should now be a list of all the detectives who have any tickets left
                 for (Player d : detectives) {
-                    boolean dHasAnyTickets = false;
-                    for (Ticket t : d.tickets().keySet()) {
-                        if (d.has(t)) dHasAnyTickets = true;
-                    }
-                    if (dHasAnyTickets) newRemaining.add(d.piece());
+                    if (Tickets.any(d.packedTickets())) newRemaining.add(d.piece());
                 }
             }
             else {
@@ -335,6 +411,9 @@ public final class MyGameStateFactory implements Factory<GameState> {
                     if (d.piece() == move.commencedBy()) {
                         // d is the detective who moved
                         SingleMove sm = (SingleMove) move;
+                        newOccupied = occupied.clone(); // update the occupancy with the move
+                        Bitboard.clear(newOccupied, d.location());
+                        Bitboard.set(newOccupied, sm.destination);
                         newDetectives.set(i, d.at(sm.destination)); // move the detective
                         d = newDetectives.get(i);
                         newDetectives.set(i, d.use(move.tickets())); // remove the ticket
@@ -346,7 +425,17 @@ public final class MyGameStateFactory implements Factory<GameState> {
                 if(newRemaining.isEmpty()) newRemaining.add(newMrX.piece());
             }
 
-            return new MyGameState(setup, ImmutableSet.copyOf(newRemaining), newLog, newMrX, ImmutableList.copyOf(newDetectives));
+            // swap the changed features in the key: round, who's left to move and the players that changed
+            long newKey = key ^ Zobrist.round(log.size()) ^ Zobrist.round(newLog.size());
+            for (Piece p : remaining) newKey ^= Zobrist.remaining(p);
+            for (Piece p : newRemaining) newKey ^= Zobrist.remaining(p);
+            newKey ^= Zobrist.of(mrX) ^ Zobrist.of(newMrX);
+            for (int i = 0; i < detectives.size(); i++) {
+                if (detectives.get(i) != newDetectives.get(i))
+                    newKey ^= Zobrist.of(detectives.get(i)) ^ Zobrist.of(newDetectives.get(i));
+            }
+
+            return new MyGameState(setup, ImmutableSet.copyOf(newRemaining), newLog, newMrX, ImmutableList.copyOf(newDetectives), newOccupied, newKey);
         }
     }
 
@@ -0,0 +1,283 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Optional;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * A {@link GameState} factory for search engines that advance millions of times per move.
+ * <br>
+ * The states keep the players in primitives: every location in one long ({@link #LOCATION_BITS}
+ * bits per piece), every player's tickets in one long each (see {@link Tickets}) and the pieces
+ * still to move this round as a bitmask; the round is the size of the travel log. Pieces are
+ * indexed with MrX at 0 followed by the detectives in the order given to
+ * {@link #build(GameSetup, Player, ImmutableList)}.
+ * <br>
+ * Behaves exactly like {@link MyGameStateFactory}, with the extra restriction that locations
+ * must be less than 2<sup>{@value #LOCATION_BITS}</sup> and ticket counts at most
+ * {@link Tickets#MAX}.
+ */
+public final class PackedGameStateFactory implements Factory<GameState> {
+
+	static final int LOCATION_BITS = 10;
+	private static final long LOCATION_MASK = (1L << LOCATION_BITS) - 1;
+	private static final int MAX_PIECES = Long.SIZE / LOCATION_BITS;
+
+	@Nonnull @Override public GameState build(GameSetup setup,
+	                                          Player mrX,
+	                                          ImmutableList<Player> detectives) {
+		MyGameStateFactory.checkParameters(setup, mrX, detectives);
+		if (detectives.size() + 1 > MAX_PIECES)
+			throw new IllegalArgumentException("Too many detectives: " + detectives.size());
+		var pieces = ImmutableList.<Piece>builder().add(mrX.piece());
+		var tickets = new long[detectives.size() + 1];
+		long locations = 0;
+		for (int i = 0; i <= detectives.size(); i++) {
+			Player player = i == 0 ? mrX : detectives.get(i - 1);
+			if (player.location() < 0 || player.location() > LOCATION_MASK)
+				throw new IllegalArgumentException("Location out of range: " + player);
+			if (i > 0) pieces.add(player.piece());
+			tickets[i] = player.packedTickets();
+			locations |= (long) player.location() << (i * LOCATION_BITS);
+		}
+		var pieceSet = ImmutableSet.copyOf(pieces.build());
+		if (pieceSet.size() != tickets.length)
+			throw new IllegalArgumentException("Duplicate pieces: " + detectives);
+		int[] detectiveLocations = detectives.stream().mapToInt(Player::location).toArray();
+		long key = Zobrist.round(0) ^ Zobrist.remaining(mrX.piece()) ^ Zobrist.of(mrX);
+		for (Player detective : detectives) key ^= Zobrist.of(detective);
+		return new PackedGameState(setup, pieceSet, mrX.presentTickets(),
+				locations, tickets, 1, TravelLog.EMPTY,
+				MoveRules.occupied(setup.compactGraph(), detectiveLocations), key);
+	}
+
+	private static final class PackedGameState
+			implements GameState, MoveGenerator, MoveRules.Position {
+
+		private final GameSetup setup;
+		// MrX first, then the detectives
+		private final ImmutableSet<Piece> pieces;
+		// the tickets MrX can be given, see Player#give
+		private final int mrXPresent;
+		private final long locations;
+		private final long[] tickets;
+		private final int remaining;
+		private final TravelLog log;
+		private final long[] occupied;
+		private final long key;
+		// made on first request, see getAvailableMoves
+		private ImmutableSet<Move> moves;
+		private final ImmutableSet<Piece> winner;
+
+		private PackedGameState(GameSetup setup,
+		                        ImmutableSet<Piece> pieces,
+		                        int mrXPresent,
+		                        long locations,
+		                        long[] tickets,
+		                        int remaining,
+		                        TravelLog log,
+		                        long[] occupied,
+		                        long key) {
+			this.setup = setup;
+			this.pieces = pieces;
+			this.mrXPresent = mrXPresent;
+			this.locations = locations;
+			this.tickets = tickets;
+			this.remaining = remaining;
+			this.log = log;
+			this.occupied = occupied;
+			this.key = key;
+			this.winner = determineWinner();
+			if (!winner.isEmpty()) this.moves = ImmutableSet.of();
+		}
+
+		@Nonnull @Override public GameSetup setup() { return setup; }
+
+		@Nonnull @Override public long[] occupied() { return occupied; }
+
+		@Override public int round() { return log.size(); }
+
+		@Override public int pieceCount() { return tickets.length; }
+
+		@Nonnull @Override public Piece piece(int index) { return pieces.asList().get(index); }
+
+		@Override public int location(int index) {
+			return (int) ((locations >>> (index * LOCATION_BITS)) & LOCATION_MASK);
+		}
+
+		@Override public int held(int index) { return MoveRules.atLeast(tickets[index], 1); }
+
+		@Override public int pairs(int index) { return MoveRules.atLeast(tickets[index], 2); }
+
+		@Override public boolean isRemaining(int index) { return (remaining & (1 << index)) != 0; }
+
+		private int indexOf(Piece piece) {
+			int index = pieces.asList().indexOf(piece);
+			if (index < 0) throw new IllegalArgumentException("Piece not in game: " + piece);
+			return index;
+		}
+
+		private boolean mrXTurn() { return (remaining & 1) != 0; }
+
+		private ImmutableSet<Move> makeMoves() {
+			var moves = ImmutableSet.<Move>builder();
+			MoveRules.forEachMove(this, move -> {
+				moves.add(move);
+				return true;
+			});
+			return moves.build();
+		}
+
+		private ImmutableSet<Piece> detectivePieces() {
+			return pieces.asList().subList(1, pieces.size()).stream()
+					.collect(ImmutableSet.toImmutableSet());
+		}
+
+		private boolean canMove() {
+			if (mrXTurn()) {
+				// MrX has a double move only if he has a single move
+				return MoveRules.hasSingleMove(setup.compactGraph(), occupied,
+						pieces.asList().get(0), location(0), MoveRules.atLeast(tickets[0], 1));
+			}
+			for (int i = 1; i < tickets.length; i++) {
+				if ((remaining & (1 << i)) != 0 && MoveRules.hasSingleMove(setup.compactGraph(),
+						occupied, pieces.asList().get(i), location(i), MoveRules.atLeast(tickets[i], 1)))
+					return true;
+			}
+			return false;
+		}
+
+		private ImmutableSet<Piece> determineWinner() {
+			ImmutableSet<Piece> mrX = ImmutableSet.of(pieces.asList().get(0));
+			boolean detectivesHaveTickets = false;
+			for (int i = 1; i < tickets.length; i++) {
+				// a detective on MrX's station caught him
+				if (location(i) == location(0)) return detectivePieces();
+				detectivesHaveTickets |= Tickets.any(tickets[i]);
+			}
+			if (!detectivesHaveTickets) return mrX;
+			// all rounds played and the detectives have finished the last one
+			if (mrXTurn() && setup.rounds.size() == log.size()) return mrX;
+			// whoever is to move but can't, loses
+			if (!canMove()) return mrXTurn() ? detectivePieces() : mrX;
+			return ImmutableSet.of();
+		}
+
+		@Nonnull @Override public GameSetup getSetup() { return setup; }
+
+		@Nonnull @Override public ImmutableSet<Piece> getPlayers() { return pieces; }
+
+		@Nonnull @Override public Optional<Integer> getDetectiveLocation(Detective detective) {
+			int index = pieces.asList().indexOf(detective);
+			return index > 0 ? Optional.of(location(index)) : Optional.empty();
+		}
+
+		@Nonnull @Override public Optional<TicketBoard> getPlayerTickets(Piece piece) {
+			int index = pieces.asList().indexOf(piece);
+			if (index < 0) return Optional.empty();
+			long packed = tickets[index];
+			return Optional.of(ticket -> Tickets.count(packed, ticket));
+		}
+
+		@Nonnull @Override public ImmutableList<LogEntry> getMrXTravelLog() { return log.asList(); }
+
+		@Nonnull @Override public ImmutableSet<Piece> getWinner() { return winner; }
+
+		@Nonnull @Override public ImmutableSet<Move> getAvailableMoves() {
+			// racing threads make equal sets, so publishing whichever wins is fine
+			var available = moves;
+			if (available == null) moves = available = makeMoves();
+			return available;
+		}
+
+		@Override public long positionKey() { return key; }
+
+		@Override public boolean forEachMove(@Nonnull MoveConsumer consumer) {
+			var available = moves;
+			if (available == null) return MoveRules.forEachMove(this, consumer);
+			for (Move move : available) if (!consumer.accept(move)) return false;
+			return true;
+		}
+
+		@Override public int countMoves() {
+			var available = moves;
+			return available != null ? available.size() : MoveRules.countMoves(this);
+		}
+
+		@Nonnull @Override public Optional<Move> randomMove(@Nonnull Random random) {
+			var available = moves;
+			if (available == null) return MoveRules.randomMove(this, random);
+			if (available.isEmpty()) return Optional.empty();
+			return Optional.of(available.asList().get(random.nextInt(available.size())));
+		}
+
+		private LogEntry logEntry(int round, Ticket ticket, int destination) {
+			return setup.rounds.get(round)
+					? LogEntry.reveal(ticket, destination)
+					: LogEntry.hidden(ticket);
+		}
+
+		@Override public boolean isLegal(Move move) {
+			return winner.isEmpty() && MoveRules.isLegal(this, move);
+		}
+
+		@Nonnull @Override public GameState advance(Move move) {
+			if (!isLegal(move)) throw new IllegalArgumentException("Illegal move: " + move);
+			return advanceUnchecked(move);
+		}
+
+		@Nonnull @Override public GameState advanceUnchecked(Move move) {
+			int index = indexOf(move.commencedBy());
+			var newTickets = tickets.clone();
+			for (Ticket ticket : move.tickets()) {
+				newTickets[index] = Tickets.add(newTickets[index], ticket, -1);
+				// detectives hand their tickets over to MrX
+				if (index != 0) newTickets[0] = Tickets.give(newTickets[0], mrXPresent, ticket);
+			}
+			int destination = move.visit(new Move.FunctionalVisitor<>(
+					m -> m.destination, m -> m.destination2));
+			int shift = index * LOCATION_BITS;
+			long newLocations = (locations & ~(LOCATION_MASK << shift))
+					| ((long) destination << shift);
+			int newRemaining = remaining & ~(1 << index);
+			var newLog = log;
+			var newOccupied = occupied;
+			if (index == 0) {
+				newLog = move.visit(new Move.FunctionalVisitor<>(
+						m -> log.append(logEntry(log.size(), m.ticket, m.destination)),
+						m -> log.append(logEntry(log.size(), m.ticket1, m.destination1))
+								.append(logEntry(log.size() + 1, m.ticket2, m.destination2))));
+				// every detective with tickets left moves next
+				for (int i = 1; i < newTickets.length; i++)
+					if (Tickets.any(newTickets[i])) newRemaining |= 1 << i;
+			} else {
+				newOccupied = occupied.clone();
+				Bitboard.clear(newOccupied, location(index));
+				Bitboard.set(newOccupied, destination);
+				if (newRemaining == 0) newRemaining = 1;
+			}
+			Piece piece = piece(index);
+			long newKey = key
+					^ Zobrist.location(piece, location(index)) ^ Zobrist.location(piece, destination)
+					^ Zobrist.tickets(piece, tickets[index]) ^ Zobrist.tickets(piece, newTickets[index])
+					^ Zobrist.round(log.size()) ^ Zobrist.round(newLog.size());
+			if (index != 0) {
+				newKey ^= Zobrist.tickets(piece(0), tickets[0])
+						^ Zobrist.tickets(piece(0), newTickets[0]);
+			}
+			for (int i = 0, changed = remaining ^ newRemaining; i < tickets.length; i++)
+				if ((changed & (1 << i)) != 0) newKey ^= Zobrist.remaining(piece(i));
+			return new PackedGameState(setup, pieces, mrXPresent, newLocations, newTickets,
+					newRemaining, newLog, newOccupied, newKey);
+		}
+	}
+}
@@ -2,7 +2,6 @@ package uk.ac.bris.cs.scotlandyard.model;
 
 import com.google.common.collect.ImmutableMap;
 
-import java.util.HashMap;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
@@ -12,18 +11,49 @@ import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
 /**
  * A POJO representing an immutable player of the ScotlandYard game.
  * Each player contains the {@link Piece} (coloured counter), {@link Ticket}s, and the location.
+ * <br>
+ * Ticket counts are packed into one long (see {@link Tickets}) next to a mask of the tickets
+ * present in the map the player was made with, so using and giving tickets is arithmetic on the
+ * packed counts. The map of {@link #tickets()} is only made when asked for.
  */
 public final class Player {
+	private static final Ticket[] TICKETS = Ticket.values();
+
 	private final Piece piece;
-	private final ImmutableMap<Ticket, Integer> tickets;
+	private final long counts;
+	// bit n set if the ticket with ordinal n is a key of the ticket map
+	private final int present;
 	private final int location;
+	// made on first use; racing threads make equal maps, so whichever write wins is fine
+	private ImmutableMap<Ticket, Integer> tickets;
 
+	/**
+	 * Creates a player. Each ticket count must be within 0 and 4095, the most the packed counts
+	 * hold; giving a ticket beyond that throws too.
+	 *
+	 * @param piece the piece
+	 * @param tickets the ticket counts; tickets that aren't keys can't be used or given
+	 * @param location the location
+	 * @throws IllegalArgumentException if a count is negative or larger than 4095
+	 */
 	public Player(@Nonnull Piece piece,
 	              @Nonnull ImmutableMap<Ticket, Integer> tickets,
 	              int location) {
 		this.piece = Objects.requireNonNull(piece);
 		this.tickets = Objects.requireNonNull(tickets);
+		this.counts = Tickets.of(tickets);
+		int present = 0;
+		for (Ticket ticket : tickets.keySet()) present |= 1 << ticket.ordinal();
+		this.present = present;
+		this.location = location;
+	}
+	private Player(Piece piece, long counts, int present, int location,
+	               ImmutableMap<Ticket, Integer> tickets) {
+		this.piece = piece;
+		this.counts = counts;
+		this.present = present;
 		this.location = location;
+		this.tickets = tickets;
 	}
 	/**
 	 * @return the piece
@@ -40,7 +70,38 @@ public final class Player {
 	/**
 	 * @return the ticket
 	 */
-	@Nonnull public ImmutableMap<Ticket, Integer> tickets() { return tickets; }
+	@Nonnull public ImmutableMap<Ticket, Integer> tickets() {
+		var map = tickets;
+		if (map == null) {
+			var builder = ImmutableMap.<Ticket, Integer>builderWithExpectedSize(TICKETS.length);
+			for (Ticket ticket : TICKETS) {
+				if ((present & 1 << ticket.ordinal()) != 0)
+					builder.put(ticket, Tickets.count(counts, ticket));
+			}
+			tickets = map = builder.build();
+		}
+		return map;
+	}
+	/**
+	 * @return the counts of every ticket, those that aren't keys as zero, the way a
+	 * {@link Board.TicketBoard} reports them; the map of {@link #tickets()} if every ticket is a key
+	 */
+	@Nonnull ImmutableMap<Ticket, Integer> boardTickets() {
+		return present == (1 << TICKETS.length) - 1 ? tickets() : Tickets.toMap(counts);
+	}
+	/**
+	 * @return the ticket counts packed as described in {@link Tickets}
+	 */
+	long packedTickets() { return counts; }
+	/**
+	 * @return the tickets that are keys of the map, bit n set for the ticket with ordinal n
+	 */
+	int presentTickets() { return present; }
+	/**
+	 * @param ticket the ticket
+	 * @return how many of the ticket the player has
+	 */
+	public int count(@Nonnull Ticket ticket) { return Tickets.count(counts, ticket); }
 	/**
 	 * @return the location
 	 */
@@ -50,7 +111,7 @@ public final class Player {
 	 * @return whether the player has the given ticket
 	 */
 	public boolean has(@Nonnull Ticket ticket) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) != 0;
+		return Tickets.count(counts, Objects.requireNonNull(ticket)) != 0;
 	}
 	/**
 	 * @param ticket the ticket
@@ -58,7 +119,7 @@ public final class Player {
 	 * @return whether the player has &gt;= the required numbers of the given ticket
 	 */
 	public boolean hasAtLeast(@Nonnull Ticket ticket, int count) {
-		return tickets.getOrDefault(Objects.requireNonNull(ticket), 0) >= count;
+		return Tickets.count(counts, Objects.requireNonNull(ticket)) >= count;
 	}
 	/**
 	 * See {@link #give(Ticket)}
@@ -67,18 +128,20 @@ public final class Player {
 	 * @return a new player with one more of the given tickets
 	 */
 	@Nonnull public Player give(@Nonnull Iterable<Ticket> tickets) {
-		var x = this;
-		for (Ticket t : tickets) x = x.give(t);
-		return x;
+		long x = counts;
+		for (Ticket t : tickets) x = give(x, t);
+		return withCounts(x);
 	}
 	/**
 	 * @param ticket the ticket
 	 * @return a new player with one more of the given ticket
 	 */
 	@Nonnull public Player give(@Nonnull Ticket ticket) {
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n + 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		return withCounts(give(counts, ticket));
+	}
+	private long give(long counts, Ticket ticket) {
+		// like the map it stands for, only tickets that are keys take more
+		return Tickets.give(counts, present, ticket);
 	}
 	/**
 	 * See {@link #use(Ticket)}
@@ -87,33 +150,39 @@ public final class Player {
 	 * @return a new player with one less of the given tickets
 	 */
 	@Nonnull public Player use(@Nonnull Iterable<Ticket> tickets) {
-		var x = this;
-		for (Ticket t : tickets) x = x.use(t);
-		return x;
+		long x = counts;
+		for (Ticket t : tickets) x = use(x, t);
+		return withCounts(x);
 	}
 	/**
 	 * @param ticket the ticket
 	 * @return a new player with one less of the given ticket
 	 */
 	@Nonnull public Player use(@Nonnull Ticket ticket) {
-		if (!has(ticket))
+		return withCounts(use(counts, ticket));
+	}
+	private static long use(long counts, Ticket ticket) {
+		if (Tickets.count(counts, ticket) == 0)
 			throw new IllegalArgumentException("No " + ticket + " remaining");
-		var map = new HashMap<>(tickets);
-		map.computeIfPresent(ticket, (t, n) -> n - 1);
-		return new Player(piece, ImmutableMap.copyOf(map), location);
+		return Tickets.add(counts, ticket, -1);
+	}
+	private Player withCounts(long newCounts) {
+		return new Player(piece, newCounts, present, location, newCounts == counts ? tickets : null);
 	}
 	/**
 	 * @param newLocation the location
 	 * @return a new player at the given location
 	 */
-	@Nonnull public Player at(int newLocation) { return new Player(piece, tickets, newLocation); }
+	@Nonnull public Player at(int newLocation) {
+		return new Player(piece, counts, present, newLocation, tickets);
+	}
 	@Override public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
 		Player that = (Player) o;
 		return location == that.location && piece == that.piece &&
-				Objects.equals(tickets, that.tickets);
+				counts == that.counts && present == that.present;
 	}
-	@Override public int hashCode() { return Objects.hash(piece, tickets, location); }
-	@Override public String toString() { return piece + "@" + location + "(" + tickets + ")"; }
+	@Override public int hashCode() { return Objects.hash(piece, counts, present, location); }
+	@Override public String toString() { return piece + "@" + location + "(" + tickets() + ")"; }
 }
@@ -0,0 +1,446 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * A mutable game state for tree searches. Unlike {@link Board.GameState#advance(Move)}, moves
+ * are made in place with {@link #apply(Move)} and taken back with {@link #undo()}, so walking a
+ * search tree allocates nothing per node.
+ * <br>
+ * Pieces are indexed with MrX at 0 followed by the detectives. The rules are the same as
+ * {@link MyGameStateFactory}'s but moves given to {@link #apply(Move)} are trusted: passing a move
+ * not produced by {@link #addMoves(Collection)} leaves the state undefined. Moves can also be
+ * applied in their {@link IntMove} encoding, which is how the change stack keeps them.
+ * <br>
+ * Instances are not thread safe; use {@link #copy()} to give each search thread its own.
+ */
+public final class SearchState implements MoveGenerator {
+
+	/**
+	 * The outcome of the game so far
+	 */
+	public enum Winner {NONE, MRX, DETECTIVES}
+
+	private static final int HIDDEN = -1;
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	private final GameSetup setup;
+	private final CompactGraph graph;
+	private final Piece[] pieces;
+	// the tickets MrX can be given, see Player#give
+	private final int mrXPresent;
+	private final int[] locations;
+	private final long[] tickets;
+	private final long[] occupied;
+	private int remaining;
+
+	// MrX's travel log, one ticket ordinal and location (or HIDDEN) per round
+	private final int[] logTickets;
+	private final int[] logLocations;
+	private int round;
+	private long key;
+
+	// change stack, one entry per applied move
+	private int[] moves;
+	private int[] sources;
+	private int[] previousRemaining;
+	private long[] previousKeys;
+	private int depth;
+
+	// this state as seen by MoveRules' generators
+	private final MoveRules.Position position = new MoveRules.Position() {
+		@Nonnull @Override public GameSetup setup() { return setup; }
+		@Nonnull @Override public long[] occupied() { return occupied; }
+		@Override public int round() { return round; }
+		@Override public int pieceCount() { return pieces.length; }
+		@Nonnull @Override public Piece piece(int index) { return pieces[index]; }
+		@Override public int location(int index) { return locations[index]; }
+		@Override public int held(int index) { return SearchState.this.held(index); }
+		@Override public int pairs(int index) { return MoveRules.atLeast(tickets[index], 2); }
+		@Override public boolean isRemaining(int index) { return SearchState.this.isRemaining(index); }
+	};
+
+	private SearchState(GameSetup setup, Piece[] pieces, int mrXPresent, int[] locations,
+	                    long[] tickets, int remaining, int[] logTickets, int[] logLocations, int round) {
+		this.setup = setup;
+		this.graph = setup.compactGraph();
+		this.pieces = pieces;
+		this.mrXPresent = mrXPresent;
+		this.locations = locations;
+		this.tickets = tickets;
+		this.remaining = remaining;
+		this.logTickets = logTickets;
+		this.logLocations = logLocations;
+		this.round = round;
+		this.occupied = MoveRules.occupied(graph,
+				Arrays.copyOfRange(locations, 1, locations.length));
+		this.moves = new int[16];
+		this.sources = new int[16];
+		this.previousRemaining = new int[16];
+		this.previousKeys = new long[16];
+		this.key = Zobrist.round(round);
+		for (int i = 0; i < pieces.length; i++) {
+			key ^= Zobrist.location(pieces[i], locations[i]) ^ Zobrist.tickets(pieces[i], tickets[i]);
+			if (isRemaining(i)) key ^= Zobrist.remaining(pieces[i]);
+		}
+	}
+
+	/**
+	 * @param setup the game setup
+	 * @param mrX MrX
+	 * @param detectives the detectives
+	 * @return a search state at the start of the game
+	 * @throws IllegalArgumentException for the same reasons as {@link MyGameStateFactory}
+	 */
+	@Nonnull public static SearchState of(@Nonnull GameSetup setup,
+	                                      @Nonnull Player mrX,
+	                                      @Nonnull List<Player> detectives) {
+		MyGameStateFactory.checkParameters(setup, mrX, detectives);
+		int count = detectives.size() + 1;
+		var pieces = new Piece[count];
+		var locations = new int[count];
+		var tickets = new long[count];
+		for (int i = 0; i < count; i++) {
+			Player player = i == 0 ? mrX : detectives.get(i - 1);
+			pieces[i] = player.piece();
+			locations[i] = player.location();
+			tickets[i] = player.packedTickets();
+		}
+		int rounds = setup.rounds.size();
+		return new SearchState(setup, pieces, mrX.presentTickets(), locations, tickets, 1,
+				new int[rounds], new int[rounds], 0);
+	}
+
+	/**
+	 * Creates a search state from what a player can see of the board. Because MrX's location is
+	 * not part of the board, it must be supplied; on MrX's turn it is the source of his moves.
+	 * <br>
+	 * The side to move is taken from the available moves. On the detectives' turn, like
+	 * {@link MyGameStateFactory}, every detective with tickets left who hasn't moved yet is still
+	 * to move, including those who are blocked; a detective who has moved and is blocked now can't
+	 * be told apart from one who hasn't and counts as the latter. Finished games count as MrX's
+	 * turn, unless MrX won with such detectives left.
+	 * <br>
+	 * A board doesn't tell which tickets MrX's map was made with, so MrX is taken to be given
+	 * every ticket detectives use, as with {@link ScotlandYard#defaultMrXTickets()}.
+	 *
+	 * @param board the board
+	 * @param mrXLocation where MrX is, or is assumed to be
+	 * @return a search state of the board
+	 */
+	@Nonnull public static SearchState of(@Nonnull Board board, int mrXLocation) {
+		var players = board.getPlayers();
+		var pieces = new Piece[players.size()];
+		int count = 0;
+		for (Piece piece : players) if (piece.isMrX()) pieces[count++] = piece;
+		if (count != 1) throw new IllegalArgumentException("Board must have exactly one MrX");
+		for (Piece piece : players) if (piece.isDetective()) pieces[count++] = piece;
+
+		var locations = new int[count];
+		var tickets = new long[count];
+		int movers = 0;
+		for (Move move : board.getAvailableMoves()) {
+			for (int i = 0; i < count; i++) {
+				if (move.commencedBy() == pieces[i]) movers |= 1 << i;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			locations[i] = i == 0 ? mrXLocation
+					: board.getDetectiveLocation((Detective) pieces[i]).orElseThrow();
+			var ticketBoard = board.getPlayerTickets(pieces[i]).orElseThrow();
+			for (Ticket ticket : TICKETS)
+				tickets[i] = Tickets.add(tickets[i], ticket, ticketBoard.getCount(ticket));
+		}
+		int remaining = 1;
+		// a game MrX won may have ended on blocked detectives that were still to move
+		if ((movers & 1) == 0 && (movers != 0 || board.getWinner().contains(pieces[0]))) {
+			var graph = board.getSetup().compactGraph();
+			long[] occupied = MoveRules.occupied(graph, Arrays.copyOfRange(locations, 1, count));
+			for (int i = 1; i < count; i++) {
+				// detectives who can't move stay to move until the round is over
+				if (Tickets.any(tickets[i]) && !MoveRules.hasSingleMove(graph, occupied,
+						pieces[i], locations[i], MoveRules.atLeast(tickets[i], 1)))
+					movers |= 1 << i;
+			}
+			if (movers != 0) remaining = movers;
+		}
+
+		ImmutableList<LogEntry> log = board.getMrXTravelLog();
+		var setup = board.getSetup();
+		int rounds = Math.max(setup.rounds.size(), log.size());
+		var logTickets = new int[rounds];
+		var logLocations = new int[rounds];
+		for (int i = 0; i < log.size(); i++) {
+			logTickets[i] = log.get(i).ticket().ordinal();
+			logLocations[i] = log.get(i).location().orElse(HIDDEN);
+		}
+		return new SearchState(setup, pieces, (1 << TICKETS.length) - 1, locations, tickets,
+				remaining, logTickets, logLocations, log.size());
+	}
+
+	/**
+	 * @return an independent copy of this state with an empty change stack
+	 */
+	@Nonnull public SearchState copy() {
+		return new SearchState(setup, pieces, mrXPresent, locations.clone(), tickets.clone(),
+				remaining, logTickets.clone(), logLocations.clone(), round);
+	}
+
+	/**
+	 * @return the game setup
+	 */
+	@Nonnull public GameSetup setup() { return setup; }
+	/**
+	 * @return the number of pieces, MrX included
+	 */
+	public int pieceCount() { return pieces.length; }
+	/**
+	 * @param index the piece index
+	 * @return the piece
+	 */
+	@Nonnull public Piece piece(int index) { return pieces[index]; }
+	/**
+	 * @param piece the piece
+	 * @return the index of the piece, -1 if it is not part of the game
+	 */
+	public int indexOf(@Nonnull Piece piece) {
+		for (int i = 0; i < pieces.length; i++) if (pieces[i] == piece) return i;
+		return -1;
+	}
+	/**
+	 * @param index the piece index
+	 * @return the location of the piece
+	 */
+	public int location(int index) { return locations[index]; }
+	/**
+	 * @param index the piece index
+	 * @param ticket the ticket
+	 * @return how many of the ticket the piece has
+	 */
+	public int tickets(int index, @Nonnull Ticket ticket) {
+		return Tickets.count(tickets[index], ticket);
+	}
+	/**
+	 * @return whether it is MrX's turn
+	 */
+	public boolean isMrXTurn() { return (remaining & 1) != 0; }
+	/**
+	 * @param index the piece index
+	 * @return whether the piece is still to move this round
+	 */
+	public boolean isRemaining(int index) { return (remaining & (1 << index)) != 0; }
+	/**
+	 * @return the number of rounds played, i.e the size of MrX's travel log
+	 */
+	public int round() { return round; }
+	/**
+	 * @param round the round, less than {@link #round()}
+	 * @return the ticket MrX used in that round
+	 */
+	@Nonnull public Ticket logTicket(int round) { return TICKETS[logTickets[round]]; }
+	/**
+	 * @param round the round, less than {@link #round()}
+	 * @return MrX's revealed location in that round, -1 if it was hidden
+	 */
+	public int logLocation(int round) { return logLocations[round]; }
+	/**
+	 * @return the key of the current position, the same as {@link Board.GameState#positionKey()}
+	 * of the equivalent game state
+	 */
+	public long positionKey() { return key; }
+	/**
+	 * @return the number of moves that can be undone
+	 */
+	public int depth() { return depth; }
+
+	private int held(int index) { return MoveRules.atLeast(tickets[index], 1); }
+
+	/**
+	 * Adds every available move to the given collection; nothing is added once there is a winner
+	 *
+	 * @param moves the collection to add to
+	 */
+	public void addMoves(@Nonnull Collection<? super Move> moves) {
+		forEachMove(move -> {
+			moves.add(move);
+			return true;
+		});
+	}
+
+	/**
+	 * Hands every available move to the consumer, in the same order as
+	 * {@link #addMoves(Collection)}; there are none once there is a winner.
+	 * The state must not be changed until this returns.
+	 */
+	@Override public boolean forEachMove(@Nonnull MoveConsumer consumer) {
+		return winner() != Winner.NONE || MoveRules.forEachMove(position, consumer);
+	}
+
+	@Override public int countMoves() {
+		return winner() != Winner.NONE ? 0 : MoveRules.countMoves(position);
+	}
+
+	@Nonnull @Override public Optional<Move> randomMove(@Nonnull Random random) {
+		return winner() != Winner.NONE ? Optional.empty() : MoveRules.randomMove(position, random);
+	}
+
+	/**
+	 * @return the winner of the game so far
+	 */
+	@Nonnull public Winner winner() {
+		boolean detectivesHaveTickets = false;
+		for (int i = 1; i < pieces.length; i++) {
+			if (locations[i] == locations[0]) return Winner.DETECTIVES;
+			detectivesHaveTickets |= Tickets.any(tickets[i]);
+		}
+		if (!detectivesHaveTickets) return Winner.MRX;
+		if (isMrXTurn()) {
+			if (setup.rounds.size() == round) return Winner.MRX;
+			// MrX has a double move only if he has a single move
+			return MoveRules.hasSingleMove(graph, occupied, pieces[0], locations[0], held(0))
+					? Winner.NONE : Winner.DETECTIVES;
+		}
+		for (int i = 1; i < pieces.length; i++) {
+			if (isRemaining(i)
+					&& MoveRules.hasSingleMove(graph, occupied, pieces[i], locations[i], held(i)))
+				return Winner.NONE;
+		}
+		return Winner.MRX;
+	}
+
+	/**
+	 * Makes the move in place
+	 *
+	 * @param move a move from {@link #addMoves(Collection)}
+	 */
+	public void apply(@Nonnull Move move) { apply(IntMove.of(move)); }
+
+	/**
+	 * Makes the move in place
+	 *
+	 * @param move a move from {@link #addMoves(Collection)} encoded with {@link IntMove}
+	 */
+	public void apply(int move) {
+		int index = indexOf(IntMove.piece(move));
+		if (depth == moves.length) {
+			moves = Arrays.copyOf(moves, depth * 2);
+			sources = Arrays.copyOf(sources, depth * 2);
+			previousRemaining = Arrays.copyOf(previousRemaining, depth * 2);
+			previousKeys = Arrays.copyOf(previousKeys, depth * 2);
+		}
+		moves[depth] = move;
+		sources[depth] = locations[index];
+		previousRemaining[depth] = remaining;
+		previousKeys[depth] = key;
+		depth++;
+		int before = remaining;
+		remaining &= ~(1 << index);
+		Ticket ticket = IntMove.ticket(move);
+		if (!IntMove.isDouble(move)) {
+			use(index, ticket);
+			moveTo(index, IntMove.destination(move));
+			if (index == 0) log(ticket, IntMove.destination(move));
+		} else {
+			Ticket ticket2 = IntMove.ticket2(move);
+			use(index, ticket);
+			use(index, ticket2);
+			use(index, Ticket.DOUBLE);
+			moveTo(index, IntMove.destination2(move));
+			log(ticket, IntMove.destination(move));
+			log(ticket2, IntMove.destination2(move));
+		}
+		if (index == 0) {
+			// every detective with tickets left moves next
+			for (int i = 1; i < pieces.length; i++) if (Tickets.any(tickets[i])) remaining |= 1 << i;
+		} else if (remaining == 0) remaining = 1;
+		for (int i = 0, changed = before ^ remaining; i < pieces.length; i++)
+			if ((changed & (1 << i)) != 0) key ^= Zobrist.remaining(pieces[i]);
+	}
+
+	/**
+	 * Takes back the last move made with {@link #apply(Move)} or {@link #apply(int)}
+	 *
+	 * @throws IllegalStateException if there is no move to take back
+	 */
+	public void undo() {
+		if (depth == 0) throw new IllegalStateException("Nothing to undo");
+		depth--;
+		int move = moves[depth];
+		remaining = previousRemaining[depth];
+		long previousKey = previousKeys[depth];
+		int index = indexOf(IntMove.piece(move));
+		moveTo(index, sources[depth]);
+		give(index, IntMove.ticket(move));
+		if (!IntMove.isDouble(move)) {
+			if (index == 0) round--;
+		} else {
+			give(index, IntMove.ticket2(move));
+			give(index, Ticket.DOUBLE);
+			round -= 2;
+		}
+		key = previousKey;
+	}
+
+	/**
+	 * @return the last move made, encoded with {@link IntMove}; {@link IntMove#NONE} if there is
+	 * none to take back
+	 */
+	public int lastMove() { return depth == 0 ? IntMove.NONE : moves[depth - 1]; }
+
+	private void use(int index, Ticket ticket) {
+		addTicket(index, ticket, -1);
+		// detectives hand their tickets over to MrX, who drops those he wasn't made with
+		if (index != 0 && Tickets.give(tickets[0], mrXPresent, ticket) != tickets[0])
+			addTicket(0, ticket, 1);
+	}
+
+	private void give(int index, Ticket ticket) {
+		addTicket(index, ticket, 1);
+		if (index != 0 && (mrXPresent & 1 << ticket.ordinal()) != 0) addTicket(0, ticket, -1);
+	}
+
+	private void addTicket(int index, Ticket ticket, int delta) {
+		int count = Tickets.count(tickets[index], ticket);
+		key ^= Zobrist.tickets(pieces[index], ticket, count)
+				^ Zobrist.tickets(pieces[index], ticket, count + delta);
+		tickets[index] = Tickets.add(tickets[index], ticket, delta);
+	}
+
+	private void moveTo(int index, int destination) {
+		if (index != 0) {
+			Bitboard.clear(occupied, locations[index]);
+			if (graph.contains(destination)) Bitboard.set(occupied, destination);
+		}
+		key ^= Zobrist.location(pieces[index], locations[index])
+				^ Zobrist.location(pieces[index], destination);
+		locations[index] = destination;
+	}
+
+	private void log(Ticket ticket, int destination) {
+		logTickets[round] = ticket.ordinal();
+		logLocations[round] = setup.rounds.get(round) ? destination : HIDDEN;
+		key ^= Zobrist.round(round) ^ Zobrist.round(round + 1);
+		round++;
+	}
+
+	@Override public String toString() {
+		var builder = new StringBuilder("SearchState{round=").append(round).append(", ");
+		for (int i = 0; i < pieces.length; i++) {
+			builder.append(pieces[i]).append('@').append(locations[i])
+					.append(isRemaining(i) ? "*" : "")
+					.append(Tickets.toMap(tickets[i])).append(' ');
+		}
+		return builder.append('}').toString();
+	}
+}
@@ -0,0 +1,89 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Static helpers for a player's ticket counts packed into one long, {@link #BITS} bits per
+ * {@link Ticket} in ordinal order.
+ */
+final class Tickets {
+
+	private Tickets() {}
+
+	static final int BITS = 12;
+	/**
+	 * The largest count a packed ticket vector can hold
+	 */
+	static final int MAX = (1 << BITS) - 1;
+	private static final Ticket[] TICKETS = Ticket.values();
+
+	/**
+	 * @param tickets the ticket counts; missing tickets count as zero
+	 * @return the packed counts
+	 * @throws IllegalArgumentException if any count is negative or larger than {@link #MAX}
+	 */
+	static long of(@Nonnull Map<Ticket, Integer> tickets) {
+		long packed = 0;
+		for (Map.Entry<Ticket, Integer> entry : tickets.entrySet()) {
+			int count = entry.getValue();
+			if (count < 0 || count > MAX)
+				throw new IllegalArgumentException("Ticket count out of range: " + entry);
+			packed |= (long) count << shift(entry.getKey());
+		}
+		return packed;
+	}
+	/**
+	 * @param packed the packed counts
+	 * @param ticket the ticket
+	 * @return the count of the given ticket
+	 */
+	static int count(long packed, @Nonnull Ticket ticket) {
+		return (int) (packed >>> shift(ticket)) & MAX;
+	}
+	/**
+	 * @param packed the packed counts
+	 * @param ticket the ticket
+	 * @param delta the amount to add, the result must stay within 0 and {@link #MAX}
+	 * @return the packed counts with the given ticket changed by delta
+	 */
+	static long add(long packed, @Nonnull Ticket ticket, int delta) {
+		return packed + ((long) delta << shift(ticket));
+	}
+	/**
+	 * Hands over one ticket the way {@link Player#give(Ticket)} does: tickets that weren't keys of
+	 * the player's map are dropped
+	 *
+	 * @param packed the packed counts
+	 * @param present the tickets that were keys, bit n set for the ticket with ordinal n
+	 * @param ticket the ticket
+	 * @return the packed counts with one more of the given ticket, if present
+	 * @throws IllegalArgumentException if the count is already {@link #MAX}
+	 */
+	static long give(long packed, int present, @Nonnull Ticket ticket) {
+		if ((present & 1 << ticket.ordinal()) == 0) return packed;
+		if (count(packed, ticket) == MAX)
+			throw new IllegalArgumentException("Too many " + ticket);
+		return add(packed, ticket, 1);
+	}
+	/**
+	 * @param packed the packed counts
+	 * @return whether there is any ticket left
+	 */
+	static boolean any(long packed) { return packed != 0; }
+	/**
+	 * @param packed the packed counts
+	 * @return the counts of every ticket as a map
+	 */
+	@Nonnull static ImmutableMap<Ticket, Integer> toMap(long packed) {
+		var builder = ImmutableMap.<Ticket, Integer>builderWithExpectedSize(TICKETS.length);
+		for (Ticket ticket : TICKETS) builder.put(ticket, count(packed, ticket));
+		return builder.build();
+	}
+	private static int shift(Ticket ticket) { return ticket.ordinal() * BITS; }
+}
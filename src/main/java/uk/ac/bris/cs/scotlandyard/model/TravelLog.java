@@ -0,0 +1,80 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * MrX's travel log as a persistent append only list: each log holds its last entry and the log
+ * before it, so appending is one allocation and every state advanced from the same position shares
+ * the entries it had in common.
+ * <br>
+ * {@link #asList()} gives the log as the {@link ImmutableList} of {@link Board#getMrXTravelLog()},
+ * made on first request and kept.
+ */
+final class TravelLog {
+
+	/**
+	 * The log with no entries
+	 */
+	static final TravelLog EMPTY = new TravelLog(null, null, 0, ImmutableList.of());
+
+	private final TravelLog previous;
+	private final LogEntry last;
+	private final int size;
+	// made on first use; racing threads make equal lists, so whichever write wins is fine
+	private ImmutableList<LogEntry> entries;
+
+	private TravelLog(TravelLog previous, LogEntry last, int size, ImmutableList<LogEntry> entries) {
+		this.previous = previous;
+		this.last = last;
+		this.size = size;
+		this.entries = entries;
+	}
+
+	/**
+	 * @param entries the entries, oldest first
+	 * @return a log of the given entries; its {@link #asList()} is the given list
+	 */
+	@Nonnull static TravelLog of(@Nonnull ImmutableList<LogEntry> entries) {
+		var log = EMPTY;
+		for (LogEntry entry : entries) log = log.append(entry);
+		if (log.size != 0) log.entries = entries;
+		return log;
+	}
+
+	/**
+	 * @param entry the entry
+	 * @return this log followed by the given entry
+	 */
+	@Nonnull TravelLog append(@Nonnull LogEntry entry) {
+		return new TravelLog(this, Objects.requireNonNull(entry), size + 1, null);
+	}
+
+	/**
+	 * @return the number of entries, which is also the current round
+	 */
+	int size() { return size; }
+
+	/**
+	 * @return the entries, oldest first
+	 */
+	@Nonnull ImmutableList<LogEntry> asList() {
+		var list = entries;
+		if (list == null) {
+			var array = new LogEntry[size];
+			var log = this;
+			ImmutableList<LogEntry> prefix;
+			// stop at the first log with its list made, as states are usually asked in order
+			while ((prefix = log.entries) == null) {
+				array[log.size - 1] = log.last;
+				log = log.previous;
+			}
+			for (int i = 0; i < prefix.size(); i++) array[i] = prefix.get(i);
+			entries = list = ImmutableList.copyOf(array);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,186 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import java.util.HashSet;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Zobrist keys for identifying game positions with a single long.
+ * <br>
+ * A position's key is the XOR of one random key per feature: the location of every piece, the
+ * count of every ticket of every piece, every piece still to move this round, and the round
+ * (i.e the size of MrX's travel log). As XOR is its own inverse, a move updates the key by
+ * XOR-ing out the features it changes and XOR-ing in the new ones. The contents of the travel log
+ * are not part of the key.
+ * <br>
+ * Keys are fixed, so equal positions get equal keys across runs and across implementations of
+ * {@link Board.GameState}. The keys of pieces in {@link ScotlandYard#ALL_PIECES} at locations below
+ * 1024 with small ticket counts, and of early rounds, are looked up from tables; anything else is
+ * mixed on demand.
+ */
+public final class Zobrist {
+
+	private Zobrist() {}
+
+	private static final Ticket[] TICKETS = Ticket.values();
+	private static final Piece[] PIECES = ScotlandYard.ALL_PIECES.toArray(new Piece[0]);
+
+	private static final int TABLE_LOCATIONS = 1024;
+	private static final int TABLE_COUNTS = 32;
+	private static final int TABLE_ROUNDS = 64;
+
+	private static final int LOCATION = 1;
+	private static final int TICKET = 2;
+	private static final int REMAINING = 3;
+	private static final int ROUND = 4;
+
+	private static final long[] LOCATION_KEYS = new long[PIECES.length * TABLE_LOCATIONS];
+	private static final long[] TICKET_KEYS =
+			new long[PIECES.length * TICKETS.length * TABLE_COUNTS];
+	private static final long[] REMAINING_KEYS = new long[PIECES.length];
+	private static final long[] ROUND_KEYS = new long[TABLE_ROUNDS];
+
+	static {
+		for (int piece = 0; piece < PIECES.length; piece++) {
+			for (int location = 0; location < TABLE_LOCATIONS; location++)
+				LOCATION_KEYS[piece * TABLE_LOCATIONS + location] = locationKey(piece, location);
+			for (int ticket = 0; ticket < TICKETS.length; ticket++) {
+				for (int count = 0; count < TABLE_COUNTS; count++)
+					TICKET_KEYS[(piece * TICKETS.length + ticket) * TABLE_COUNTS + count] =
+							ticketKey(piece, ticket, count);
+			}
+			REMAINING_KEYS[piece] = key(REMAINING, piece);
+		}
+		for (int round = 0; round < TABLE_ROUNDS; round++) ROUND_KEYS[round] = key(ROUND, round);
+	}
+
+	/**
+	 * The SplitMix64 finaliser; a bijection that spreads every input bit over the output
+	 *
+	 * @param z the value to mix
+	 * @return the mixed value
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static long key(int feature, long index) {
+		// one step of SplitMix64 per (feature, index), so keys are independent of each other
+		return mix(((long) feature << 56 ^ index) * 0x9E3779B97F4A7C15L + 0x2545F4914F6CDD1DL);
+	}
+
+	private static long locationKey(int piece, int location) {
+		return key(LOCATION, (long) piece << 32 | (location & 0xFFFFFFFFL));
+	}
+
+	private static long ticketKey(int piece, int ticket, int count) {
+		return key(TICKET, (long) piece << 40 | (long) ticket << 32 | (count & 0xFFFFFFFFL));
+	}
+
+	private static int pieceIndex(Piece piece) {
+		for (int i = 0; i < PIECES.length; i++) if (PIECES[i] == piece) return i;
+		// pieces outside the standard set still get keys of their own, just not from the tables
+		return PIECES.length + (piece.hashCode() & 0xFFFF);
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param location its location
+	 * @return the key of the piece being at the location
+	 */
+	public static long location(@Nonnull Piece piece, int location) {
+		int index = pieceIndex(piece);
+		if (index < PIECES.length && location >= 0 && location < TABLE_LOCATIONS)
+			return LOCATION_KEYS[index * TABLE_LOCATIONS + location];
+		return locationKey(index, location);
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param ticket the ticket
+	 * @param count how many of the ticket the piece has
+	 * @return the key of the piece having that many of the ticket
+	 */
+	public static long tickets(@Nonnull Piece piece, @Nonnull Ticket ticket, int count) {
+		int index = pieceIndex(piece);
+		if (index < PIECES.length && count >= 0 && count < TABLE_COUNTS)
+			return TICKET_KEYS[(index * TICKETS.length + ticket.ordinal()) * TABLE_COUNTS + count];
+		return ticketKey(index, ticket.ordinal(), count);
+	}
+
+	/**
+	 * @param piece the piece
+	 * @param packed its ticket counts, see {@link Tickets}
+	 * @return the combined keys of all the piece's ticket counts
+	 */
+	static long tickets(@Nonnull Piece piece, long packed) {
+		long key = 0;
+		for (Ticket ticket : TICKETS) key ^= tickets(piece, ticket, Tickets.count(packed, ticket));
+		return key;
+	}
+
+	/**
+	 * @param piece the piece the tickets belong to
+	 * @param board the ticket board
+	 * @return the combined keys of all the piece's ticket counts
+	 */
+	public static long tickets(@Nonnull Piece piece, @Nonnull Board.TicketBoard board) {
+		long key = 0;
+		for (Ticket ticket : TICKETS) key ^= tickets(piece, ticket, board.getCount(ticket));
+		return key;
+	}
+
+	/**
+	 * @param player the player
+	 * @return the combined keys of the player's location and ticket counts
+	 */
+	public static long of(@Nonnull Player player) {
+		return location(player.piece(), player.location())
+				^ tickets(player.piece(), player.packedTickets());
+	}
+
+	/**
+	 * @param piece the piece
+	 * @return the key of the piece still being to move this round
+	 */
+	public static long remaining(@Nonnull Piece piece) {
+		int index = pieceIndex(piece);
+		return index < PIECES.length ? REMAINING_KEYS[index] : key(REMAINING, index);
+	}
+
+	/**
+	 * @param round the round, i.e the size of MrX's travel log
+	 * @return the key of the round
+	 */
+	public static long round(int round) {
+		return round >= 0 && round < TABLE_ROUNDS ? ROUND_KEYS[round] : key(ROUND, round);
+	}
+
+	/**
+	 * Computes a key from what the board shows. MrX's location isn't part of a {@link Board}, so
+	 * it must be supplied; the pieces still to move are taken from the available moves, which
+	 * misses detectives that are to move but stuck.
+	 *
+	 * @param board the board
+	 * @param mrXLocation MrX's location
+	 * @return the key of the board's position
+	 */
+	public static long of(@Nonnull Board board, int mrXLocation) {
+		long key = round(board.getMrXTravelLog().size());
+		for (Piece piece : board.getPlayers()) {
+			int location = piece.isMrX() ? mrXLocation
+					: board.getDetectiveLocation((Detective) piece).orElseThrow();
+			key ^= location(piece, location);
+			key ^= tickets(piece, board.getPlayerTickets(piece).orElseThrow());
+		}
+		var movers = new HashSet<Piece>();
+		for (Move move : board.getAvailableMoves()) movers.add(move.commencedBy());
+		for (Piece piece : movers) key ^= remaining(piece);
+		return key;
+	}
+}
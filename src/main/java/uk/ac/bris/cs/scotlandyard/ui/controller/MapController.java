@@ -6,7 +6,6 @@ import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
-import io.atlassian.fugue.Pair;
 import net.kurobako.gesturefx.GesturePane;
 import net.kurobako.gesturefx.GesturePane.FitMode;
 import net.kurobako.gesturefx.GesturePane.ScrollBarPolicy;
@@ -21,6 +20,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -54,6 +54,9 @@ import uk.ac.bris.cs.scotlandyard.ResourceManager;
 import uk.ac.bris.cs.scotlandyard.ResourceManager.ImageResource;
 import uk.ac.bris.cs.scotlandyard.model.Ai;
 import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.ImmutableBoard;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
 import uk.ac.bris.cs.scotlandyard.model.Model;
 import uk.ac.bris.cs.scotlandyard.model.Move;
 import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
@@ -62,6 +65,7 @@ import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
 import uk.ac.bris.cs.scotlandyard.model.Move.Visitor;
 import uk.ac.bris.cs.scotlandyard.model.Piece;
 import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
 import uk.ac.bris.cs.scotlandyard.ui.GameControl;
 import uk.ac.bris.cs.scotlandyard.ui.Utils;
 import uk.ac.bris.cs.scotlandyard.ui.controller.NotificationController.NotificationBuilder;
@@ -79,6 +83,8 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 @BindFXML("layout/Map.fxml") final class MapController implements Controller, GameControl {
 
 	private static final Duration DURATION = Duration.millis(400);
+	// at most this much of the turn is kept back from an AI's deadline for making its move
+	private static final long MAX_AI_GRACE_MILLIS = 1000;
 
 	@FXML private Pane root;
 	@FXML private ImageView mapView;
@@ -153,6 +159,10 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 	private ExecutorService aiExecutor;
 	private Option<Ai> mrXAi = none();
 	private Option<Ai> detectiveAi = none();
+	// the AI thinking on the other side's turn, the board it is on and its deadline
+	private Ai ponderingAi;
+	private Board ponderBoard;
+	private Deadline ponderDeadline;
 
 	@Override public void onGameAttach(
 			Model model, ModelProperty config, Consumer<ImmutableSet<Piece>> timeout) {
@@ -200,6 +210,8 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 	@Override public void onGameDetached() {
 		clearMoveHints();
 		lock();
+		if (ponderDeadline != null) ponderDeadline.cancel();
+		ponderingAi = null;
 		runInContainment(() -> {
 			mrXAi.forEach(Ai::onTerminate);
 			detectiveAi.forEach(Ai::onTerminate);
@@ -219,37 +231,102 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 
 	double maxLength() { return Math.max(root.getWidth(), root.getHeight()); }
 
-	private Runnable requestAi(Model board, Ai ai) {
-		//var terminate = new AtomicBoolean(false);
+	private BooleanSupplier requestAi(Model board, Ai ai) {
 		var moves = board.getCurrentBoard().getAvailableMoves();
 		drawMoveHighlights(moves);
+		// the move is due a little before the turn times out, so it can still be made in time
+		long timeout = config.timeoutProperty().get().toMillis();
+		var deadline = Deadline.after(timeout - Math.min(timeout / 10, MAX_AI_GRACE_MILLIS),
+				TimeUnit.MILLISECONDS);
+		var decided = new AtomicBoolean(false);
 		aiExecutor.submit(() -> {
 			try {
-				final var move = ai.pickMove(board.getCurrentBoard(), new Pair<>(config.timeoutProperty().get().getSeconds(), TimeUnit.SECONDS));
+				final var move = ai.pickMove(board.getCurrentBoard(), deadline);
 				if (!moves.contains(move)) {
 					Utils.handleFatalException(
 							new Exception("Ai(" + ai.name() + ") selected an invalid move, got: " + move + ", was expecting one of " + moves));
-				} else {
+				} else if (decided.compareAndSet(false, true)) {
 					Platform.runLater(() -> selectAndMove(board, move));
 				}
 			} catch (Exception e) {
 				Utils.handleFatalException(new Exception("Ai(" + ai.name() + ") " +
 						"threw an exception while picking a move", e));
 			}
-		}, aiExecutor);
-		return () -> handleAITimeOut(ai);
+		});
+		return () -> handleAITimeOut(board, moves, deadline, decided);
 	}
 
-	private void handleAITimeOut(Ai ai) {
-		try {
-			aiExecutor.awaitTermination(1l, TimeUnit.SECONDS);
-		} catch(InterruptedException e) {
-			Utils.handleFatalException(
-					new Exception("Ai("+ai.name()+") was interrupted during the bail-out grace period.", e));
-		}
+	// tells the AI to stop and plays its best move so far, if it offered one; returns whether a
+	// move is being made after all
+	private boolean handleAITimeOut(Model board, ImmutableSet<Move> moves,
+	                                Deadline deadline, AtomicBoolean decided) {
+		deadline.cancel();
+		// the AI's own move is already on its way
+		if (!decided.compareAndSet(false, true)) return true;
+		var best = deadline.bestSoFar().filter(moves::contains);
+		best.ifPresent(move -> selectAndMove(board, move));
+		return best.isPresent();
+	}
+
+	private void requestPonder(Model board, Ai ai, boolean mrXTurn) {
+		var snapshot = new ImmutableBoard(board.getCurrentBoard());
+		// MrX's moves give away where he is, so the detectives ponder without them
+		var current = mrXTurn ? snapshot.withoutAvailableMoves() : snapshot;
+		var deadline = Deadline.after(config.timeoutProperty().get().toMillis(),
+				TimeUnit.MILLISECONDS);
+		ponderingAi = ai;
+		ponderBoard = current;
+		ponderDeadline = deadline;
+		aiExecutor.submit(() -> {
+			try {
+				ai.ponder(current, deadline);
+			} catch (Exception e) {
+				Utils.handleFatalException(new Exception("Ai(" + ai.name() + ") " +
+						"threw an exception while pondering", e));
+			}
+		});
+	}
+
+	// stops the pondering AI and tells it whether it expected the move
+	private void finishPondering(Move move) {
+		if (ponderingAi == null) return;
+		ponderDeadline.cancel();
+		boolean hit = ponderDeadline.bestSoFar()
+				.map(expected -> seenAlike(ponderBoard, expected, move))
+				.orElse(false);
+		var ai = ponderingAi;
+		ponderingAi = null;
+		ponderBoard = null;
+		ponderDeadline = null;
+		runInContainment(() -> {
+			ai.onPonderResult(hit);
+			return Unit.VALUE;
+		});
+	}
+
+	// whether the moves look the same to the detectives, who only see MrX's travel log
+	private static boolean seenAlike(Board board, Move expected, Move actual) {
+		if (actual.commencedBy().isDetective()) return expected.equals(actual);
+		return logEntries(board, expected).equals(logEntries(board, actual));
+	}
+
+	private static List<LogEntry> logEntries(Board board, Move move) {
+		var rounds = board.getSetup().rounds;
+		int round = board.getMrXTravelLog().size();
+		return move.visit(new FunctionalVisitor<>(
+				m -> List.of(logEntry(rounds, round, m.ticket, m.destination)),
+				m -> List.of(logEntry(rounds, round, m.ticket1, m.destination1),
+						logEntry(rounds, round + 1, m.ticket2, m.destination2))));
+	}
+
+	private static LogEntry logEntry(List<Boolean> rounds, int round, Ticket ticket,
+	                                 int destination) {
+		return round < rounds.size() && rounds.get(round)
+				? LogEntry.reveal(ticket, destination)
+				: LogEntry.hidden(ticket);
 	}
 
-	private Runnable requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
+	private BooleanSupplier requestHuman(ImmutableSet<Move> moves, Consumer<Move> moveCallback) {
 		clearMoveHints();
 		BiFunction<Integer, Integer, MoveHintController> mapping = (source, location) ->
 				new MoveHintController(manager, this,
@@ -273,7 +350,7 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 				.map(MoveHintController::root)
 				.collect(Collectors.toList()));
 		drawMoveHighlights(moves);
-		return () -> {};
+		return () -> false;
 	}
 
 	private void advanceModel(Model board) {
@@ -289,7 +366,7 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 
 		if (mrX) counters.get(MRX).animateVisibility(true);
 
-		final Runnable terminateAction;
+		final BooleanSupplier terminateAction;
 		if (mrX && mrXAi.isDefined()) {
 			terminateAction = requestAi(board, mrXAi.get());
 		} else if (!mrX && detectiveAi.isDefined()) {
@@ -298,13 +375,18 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 			terminateAction = requestHuman(
 					board.getCurrentBoard().getAvailableMoves(), m -> selectAndMove(model, m));
 		}
+		// the other side's AI thinks ahead, unless it is the same one that is thinking now
+		var mover = mrX ? mrXAi : detectiveAi;
+		var other = mrX ? detectiveAi : mrXAi;
+		if (other.isDefined() && !(mover.isDefined() && mover.get() == other.get()))
+			requestPonder(board, other.get(), mrX);
 
 		notifications.show("notify_timeout",
 				new NotificationBuilder(
 						"Waiting for " + pieces + " to make a move").create(
 						Duration.millis(config.timeoutProperty().get().toMillis()),
 						() -> {
-							terminateAction.run();
+							if (terminateAction.getAsBoolean()) return;
 							notifications.dismissAll();
 							timeout.accept(pieces.stream().anyMatch(Piece::isMrX) ?
 									board.getCurrentBoard().getPlayers().stream()
@@ -317,6 +399,7 @@ import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
 	}
 
 	private void selectAndMove(Model model, Move m) {
+		finishPondering(m);
 		notifications.dismissAll();
 		clearMoveHints();
 		var counter = counters.get(m.commencedBy());
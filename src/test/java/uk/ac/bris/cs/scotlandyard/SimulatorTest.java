@@ -0,0 +1,79 @@
+package uk.ac.bris.cs.scotlandyard;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.ai.RandomAi;
+import uk.ac.bris.cs.scotlandyard.model.Ai;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+
+/**
+ * Tests {@link Simulator}
+ */
+public class SimulatorTest {
+
+	private static final Pair<Long, TimeUnit> TIMEOUT = new Pair<>(1L, TimeUnit.SECONDS);
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+	}
+
+	@Test public void testPlaysEveryGame() throws InterruptedException {
+		var simulator = new Simulator(setup,
+				() -> new RandomAi(new Random(1)), () -> new RandomAi(new Random(2)), 5, TIMEOUT);
+		var pool = new ForkJoinPool(2);
+		try {
+			var seeds = List.of(1, 2, 3, 4, 5, 6, 7, 8);
+			var report = simulator.run(seeds, pool);
+			assertThat(report.games).isEqualTo(8);
+			assertThat(report.mrXWins + report.detectiveWins()).isEqualTo(8);
+			assertThat(report.moves).isPositive();
+			assertThat(report.movesPerSecond()).isPositive();
+			// seeded AIs play the same games again
+			assertThat(simulator.run(seeds, pool).mrXWins).isEqualTo(report.mrXWins);
+			assertThat(simulator.run(seeds, pool).moves).isEqualTo(report.moves);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test public void testReportsInvalidMoves() {
+		var cheat = new Ai() {
+			@Nonnull @Override public String name() { return "Cheat"; }
+			@Nonnull @Override public Move pickMove(@Nonnull Board board,
+			                                        Pair<Long, TimeUnit> timeoutPair) {
+				return new Move.SingleMove(MRX, 1, TAXI, 2);
+			}
+		};
+		var simulator = new Simulator(setup, () -> cheat, RandomAi::new, 2, TIMEOUT);
+		var pool = new ForkJoinPool(1);
+		try {
+			assertThatThrownBy(() -> simulator.run(List.of(1), pool))
+					.isInstanceOf(IllegalStateException.class)
+					.hasRootCauseInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> new Simulator(setup, RandomAi::new, RandomAi::new, 6, TIMEOUT))
+					.isInstanceOf(IllegalArgumentException.class);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+import uk.ac.bris.cs.scotlandyard.SimulatorTest;
+
+/**
+ * Includes all tests for the AI support code and the headless simulator
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+		TranspositionTableTest.class,
+		ReachabilityTest.class,
+		MrXLocationTrackerTest.class,
+		MctsAiTest.class,
+		DetectiveMctsAiTest.class,
+		AlphaBetaAiTest.class,
+		SimulatorTest.class
+})
+public class AllTest {}
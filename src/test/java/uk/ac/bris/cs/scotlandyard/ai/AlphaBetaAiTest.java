@@ -0,0 +1,179 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.ImmutableBoard;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.WHITE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.YELLOW;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link AlphaBetaAi}
+ */
+public class AlphaBetaAiTest {
+
+	// how late a search may return; generous, a busy machine can deschedule it at any time
+	private static final long SLACK = TimeUnit.SECONDS.toNanos(1);
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	@Test public void testDetectiveCapturesRevealedMrX() {
+		var revealing = new GameSetup(setup.graph,
+				ImmutableList.copyOf(Collections.nCopies(24, true)));
+		var taxi = setup.compactGraph().neighbours(8, Transport.TAXI.ordinal());
+		Bitboard.clear(taxi, 1);
+		int red = Bitboard.nextSetBit(taxi, 0);
+		var state = new MyGameStateFactory().build(revealing,
+				new Player(MRX, defaultMrXTickets(), 1),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), red)))
+				.advance(new Move.SingleMove(MRX, 1, TAXI, 8));
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		assertThat(ai.pickMove(state, new Pair<>(300L, TimeUnit.MILLISECONDS)))
+				.isEqualTo(new Move.SingleMove(RED, red, TAXI, 8));
+		assertThat(ai.score()).isGreaterThan(AlphaBetaAi.WIN - 64);
+	}
+
+	@Test public void testMrXSearchesWithinDeadline() {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(GREEN, defaultDetectiveTickets(), 26),
+						new Player(BLUE, defaultDetectiveTickets(), 91),
+						new Player(WHITE, defaultDetectiveTickets(), 50),
+						new Player(YELLOW, defaultDetectiveTickets(), 53)));
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		var deadline = Deadline.after(200, TimeUnit.MILLISECONDS);
+		var move = ai.pickMove(state, deadline);
+		assertThat(System.nanoTime() - deadline.nanoTime()).isLessThan(SLACK);
+		assertThat(state.getAvailableMoves()).contains(move);
+		assertThat(ai.depth()).isPositive();
+		assertThat(ai.nodes()).isPositive();
+	}
+
+	@Test public void testStopsWhenCancelled() throws InterruptedException {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(GREEN, defaultDetectiveTickets(), 26),
+						new Player(BLUE, defaultDetectiveTickets(), 91)));
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		var deadline = Deadline.after(1, TimeUnit.MINUTES);
+		var canceller = new Thread(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			deadline.cancel();
+		});
+		long start = System.nanoTime();
+		canceller.start();
+		var move = ai.pickMove(state, deadline);
+		canceller.join();
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+		assertThat(state.getAvailableMoves()).contains(move);
+		assertThat(deadline.bestSoFar()).contains(move);
+	}
+
+	@Test public void testPondersOnTheReply() throws InterruptedException {
+		var start = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(BLUE, defaultDetectiveTickets(), 91)));
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		var state = start.advance(ai.pickMove(start, new Pair<>(200L, TimeUnit.MILLISECONDS)));
+		int depth = ai.depth();
+		var deadline = Deadline.after(1, TimeUnit.MINUTES);
+		var ponderer = new Thread(() -> ai.ponder(state, deadline));
+		ponderer.start();
+		Thread.sleep(200);
+		deadline.cancel();
+		ponderer.join(TimeUnit.SECONDS.toMillis(5));
+		assertThat(ponderer.isAlive()).isFalse();
+		assertThat(state.getAvailableMoves()).contains(deadline.bestSoFar().orElseThrow());
+		// pondering doesn't count as a search for a move
+		assertThat(ai.depth()).isEqualTo(depth);
+	}
+
+	@Test public void testDetectivesPonderWithoutSeeingMrXMoves() throws InterruptedException {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(BLUE, defaultDetectiveTickets(), 91)));
+		var board = new ImmutableBoard(state).withoutAvailableMoves();
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		var deadline = Deadline.after(1, TimeUnit.MINUTES);
+		var ponderer = new Thread(() -> ai.ponder(board, deadline));
+		ponderer.start();
+		Thread.sleep(200);
+		deadline.cancel();
+		ponderer.join(TimeUnit.SECONDS.toMillis(5));
+		assertThat(ponderer.isAlive()).isFalse();
+		// a move MrX could make from where he likely is
+		assertThat(deadline.bestSoFar().orElseThrow().commencedBy()).isEqualTo(MRX);
+	}
+
+	@Test public void testDetectivesSearchHiddenMrXWithinDeadline() {
+		var random = new Random(5);
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(BLUE, defaultDetectiveTickets(), 91)));
+		var ai = new AlphaBetaAi(1);
+		ai.onStart();
+		for (int moves = 0; moves < 6 && state.getWinner().isEmpty(); moves++) {
+			var available = state.getAvailableMoves();
+			Move move;
+			if (available.iterator().next().commencedBy().isMrX()) {
+				move = MoveGenerator.of(state).randomMove(random).orElseThrow();
+			} else {
+				var deadline = Deadline.after(200, TimeUnit.MILLISECONDS);
+				move = ai.pickMove(state, deadline);
+				assertThat(System.nanoTime() - deadline.nanoTime()).isLessThan(SLACK);
+				assertThat(available).contains(move);
+				assertThat(ai.depth()).isPositive();
+			}
+			state = state.advance(move);
+		}
+	}
+}
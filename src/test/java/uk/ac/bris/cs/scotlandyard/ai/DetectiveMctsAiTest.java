@@ -0,0 +1,98 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link DetectiveMctsAi}
+ */
+public class DetectiveMctsAiTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	@Test public void testCatchesRevealedMrX() {
+		// every round is a reveal, so the detectives know MrX moved from 1 to 8
+		var revealing = new GameSetup(setup.graph,
+				ImmutableList.copyOf(Collections.nCopies(24, true)));
+		var taxi = setup.compactGraph().neighbours(8, Transport.TAXI.ordinal());
+		Bitboard.clear(taxi, 1);
+		int red = Bitboard.nextSetBit(taxi, 0);
+		var state = new MyGameStateFactory().build(revealing,
+				new Player(MRX, defaultMrXTickets(), 1),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), red)))
+				.advance(new Move.SingleMove(MRX, 1, TAXI, 8));
+		var ai = new DetectiveMctsAi(2);
+		try {
+			ai.onStart();
+			assertThat(ai.pickMove(state, new Pair<>(300L, TimeUnit.MILLISECONDS)))
+					.isEqualTo(new Move.SingleMove(RED, red, TAXI, 8));
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testSearchesHiddenMrX() {
+		var random = new Random(3);
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13),
+						new Player(BLUE, defaultDetectiveTickets(), 91)));
+		var ai = new DetectiveMctsAi(2);
+		try {
+			ai.onStart();
+			for (int moves = 0; moves < 6 && state.getWinner().isEmpty(); moves++) {
+				var available = state.getAvailableMoves();
+				Move move;
+				if (available.iterator().next().commencedBy().isMrX()) {
+					move = MoveGenerator.of(state).randomMove(random).orElseThrow();
+				} else {
+					var deadline = Deadline.after(200, TimeUnit.MILLISECONDS);
+					move = ai.pickMove(state, deadline);
+					// generous slack, a busy machine can deschedule the search at any time
+					assertThat(System.nanoTime() - deadline.nanoTime())
+							.isLessThan(TimeUnit.SECONDS.toNanos(1));
+					assertThat(available).contains(move);
+					assertThat(ai.iterationsPerSecond()).isPositive();
+				}
+				state = state.advance(move);
+			}
+		} finally {
+			ai.onTerminate();
+		}
+	}
+}
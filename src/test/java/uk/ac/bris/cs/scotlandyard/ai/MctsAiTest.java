@@ -0,0 +1,161 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import io.atlassian.fugue.Pair;
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Deadline;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.ImmutableBoard;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.SearchState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link MctsAi} with a perfect information search that is told where MrX is
+ */
+public class MctsAiTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static final class Seer extends MctsAi {
+		private final int mrX;
+		Seer(int mrX) {
+			super(2, EXPLORATION, Rollout.RANDOM, Evaluator.WINNER);
+			this.mrX = mrX;
+		}
+		@Nonnull @Override public String name() { return "Seer"; }
+		@Nonnull @Override protected Determinizer determinizer(@Nonnull Board board) {
+			return Determinizer.of(SearchState.of(board, mrX));
+		}
+	}
+
+	@Test public void testDetectiveCapturesMrX() {
+		// MrX moves from 1 to 8, next to red
+		var taxi = setup.compactGraph().neighbours(8, Transport.TAXI.ordinal());
+		Bitboard.clear(taxi, 1);
+		int next = Bitboard.nextSetBit(taxi, 0);
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 1),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), next)))
+				.advance(new Move.SingleMove(MRX, 1, TAXI, 8));
+		var ai = new Seer(8);
+		try {
+			assertThat(ai.pickMove(state, new Pair<>(300L, TimeUnit.MILLISECONDS)))
+					.isEqualTo(new Move.SingleMove(RED, next, TAXI, 8));
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testReturnsLegalMoveBeforeDeadline() {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13)));
+		var ai = new Seer(45);
+		try {
+			var deadline = Deadline.after(200, TimeUnit.MILLISECONDS);
+			var move = ai.pickMove(state, deadline);
+			// generous slack, a busy machine can deschedule the search at any time
+			assertThat(System.nanoTime() - deadline.nanoTime())
+					.isLessThan(TimeUnit.SECONDS.toNanos(1));
+			assertThat(state.getAvailableMoves()).contains(move);
+			assertThat(ai.iterations()).isPositive();
+			assertThat(ai.iterationsPerSecond()).isPositive();
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testStopsWhenCancelled() throws InterruptedException {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13)));
+		var ai = new Seer(45);
+		var deadline = Deadline.after(1, TimeUnit.MINUTES);
+		var canceller = new Thread(() -> {
+			try {
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			deadline.cancel();
+		});
+		try {
+			long start = System.nanoTime();
+			canceller.start();
+			var move = ai.pickMove(state, deadline);
+			canceller.join();
+			assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+			assertThat(state.getAvailableMoves()).contains(move);
+			assertThat(deadline.bestSoFar()).contains(move);
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testPonderingWarmsTheTree() {
+		var start = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 91)));
+		var state = start.advance(new Move.SingleMove(MRX, 45, TAXI, 46));
+		var ai = new Seer(46);
+		try {
+			var deadline = Deadline.after(300, TimeUnit.MILLISECONDS);
+			ai.ponder(state, deadline);
+			var expected = deadline.bestSoFar().orElseThrow();
+			assertThat(state.getAvailableMoves()).contains(expected);
+			ai.onPonderResult(true);
+			var next = state.advance(expected);
+			assertThat(next.getAvailableMoves()).contains(
+					ai.pickMove(next, new Pair<>(200L, TimeUnit.MILLISECONDS)));
+			assertThat(ai.reusedVisits()).isPositive();
+			assertThat(ai.ponderHits()).isEqualTo(1);
+			assertThat(ai.ponderMisses()).isZero();
+		} finally {
+			ai.onTerminate();
+		}
+	}
+
+	@Test public void testPondersOnHiddenMrXMoves() {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 45),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 91)));
+		var ai = new Seer(45);
+		try {
+			var deadline = Deadline.after(300, TimeUnit.MILLISECONDS);
+			ai.ponder(new ImmutableBoard(state).withoutAvailableMoves(), deadline);
+			// the position's own moves stand in for the hidden ones
+			assertThat(state.getAvailableMoves()).contains(deadline.bestSoFar().orElseThrow());
+		} finally {
+			ai.onTerminate();
+		}
+	}
+}
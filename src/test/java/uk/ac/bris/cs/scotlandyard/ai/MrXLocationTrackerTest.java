@@ -0,0 +1,189 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.LogEntry;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.MyModelFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.MRX_LOCATIONS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link MrXLocationTracker}
+ */
+public class MrXLocationTrackerTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static Board board(int red, LogEntry... log) {
+		var board = mock(Board.class);
+		when(board.getMrXTravelLog()).thenReturn(ImmutableList.copyOf(log));
+		when(board.getPlayers()).thenReturn(ImmutableSet.of(MRX, RED));
+		when(board.getDetectiveLocation(RED)).thenReturn(Optional.of(red));
+		return board;
+	}
+
+	@Test public void testExpandsByTicketAndRemovesDetectives() {
+		var tracker = new MrXLocationTracker(setup.compactGraph(), ImmutableList.of(1));
+		// 1 has taxi edges to 8 and 9, bus edges to 46 and 58 and an underground edge to 46
+		tracker.update(board(9, LogEntry.hidden(TAXI)));
+		assertThat(tracker.size()).isEqualTo(1);
+		assertThat(tracker.contains(8)).isTrue();
+		assertThat(tracker.contains(9)).isFalse();
+		assertThat(tracker.pathCount(8)).isEqualTo(1);
+		assertThat(tracker.entries()).isEqualTo(1);
+
+		tracker.reset();
+		tracker.update(board(100, LogEntry.hidden(SECRET)));
+		for (int node : setup.graph.adjacentNodes(1)) assertThat(tracker.contains(node)).isTrue();
+		assertThat(tracker.size()).isEqualTo(setup.graph.adjacentNodes(1).size());
+
+		// two secret moves reach 1 again along every edge and back
+		tracker.update(board(100, LogEntry.hidden(SECRET), LogEntry.hidden(SECRET)));
+		assertThat(tracker.pathCount(1)).isEqualTo(setup.graph.adjacentNodes(1).size());
+
+		tracker.update(board(100, LogEntry.hidden(SECRET), LogEntry.hidden(SECRET),
+				LogEntry.reveal(TAXI, 9)));
+		assertThat(tracker.size()).isEqualTo(1);
+		assertThat(tracker.probability(9)).isEqualTo(1);
+	}
+
+	@Test public void testAlwaysContainsMrX() {
+		var random = new Random(42);
+		for (int game = 0; game < 10; game++) {
+			var mrX = new Player(MRX, defaultMrXTickets(),
+					MRX_LOCATIONS.get(random.nextInt(MRX_LOCATIONS.size())));
+			var model = new MyModelFactory().build(setup, mrX, ImmutableList.of(
+					new Player(RED, defaultDetectiveTickets(), 26),
+					new Player(GREEN, defaultDetectiveTickets(), 50),
+					new Player(BLUE, defaultDetectiveTickets(), 94)));
+			var tracker = new MrXLocationTracker(setup);
+			model.registerObserver(tracker);
+			int location = mrX.location();
+			while (model.getCurrentBoard().getWinner().isEmpty()) {
+				var moves = model.getCurrentBoard().getAvailableMoves().asList();
+				Move move = moves.get(random.nextInt(moves.size()));
+				model.chooseMove(move);
+				if (move.commencedBy() == MRX) {
+					location = move.visit(new Move.FunctionalVisitor<Integer>(
+							m -> m.destination, m -> m.destination2));
+				}
+				if (model.getCurrentBoard().getWinner().isEmpty()) {
+					assertThat(tracker.contains(location)).isTrue();
+					assertThat(tracker.pathCount(location)).isPositive();
+				}
+				var log = model.getCurrentBoard().getMrXTravelLog();
+				if (!log.isEmpty() && log.get(log.size() - 1).location().isPresent())
+					assertThat(tracker.size()).isEqualTo(1);
+			}
+		}
+	}
+
+	private static GameState move(GameState state, Piece piece, int destination) {
+		return state.advance(state.getAvailableMoves().stream()
+				.filter(move -> move.commencedBy() == piece && move.visit(
+						new Move.FunctionalVisitor<>(m -> m.destination, m -> m.destination2))
+						== destination)
+				.findFirst().orElseThrow());
+	}
+
+	@Test public void testKeepsMrXWhenADetectiveTakesTheStationHeLeft() {
+		var rounds = ImmutableList.<Boolean>builder().add(true)
+				.addAll(Collections.nCopies(23, false)).build();
+		GameState state = new MyGameStateFactory().build(new GameSetup(setup.graph, rounds),
+				new Player(MRX, defaultMrXTickets(), 1), ImmutableList.of(
+						new Player(RED, defaultDetectiveTickets(), 9),
+						new Player(BLUE, defaultDetectiveTickets(), 100)));
+		// only sees BLUE's boards, so misses the one where RED is yet to move onto 8
+		var tracker = new MrXLocationTracker(setup.compactGraph(), ImmutableList.of(1));
+		state = move(move(state, MRX, 8), RED, 19);
+		tracker.update(state);
+		assertThat(tracker.contains(8)).isTrue();
+		state = state.advance(state.getAvailableMoves().iterator().next());
+		state = move(move(state, MRX, 1), RED, 8);
+		tracker.update(state);
+		assertThat(tracker.contains(1)).isTrue();
+		assertThat(tracker.contains(8)).isFalse();
+	}
+
+	@Test public void testSkippedBoardsStillContainMrX() {
+		var random = new Random(7);
+		for (int game = 0; game < 10; game++) {
+			var mrX = new Player(MRX, defaultMrXTickets(),
+					MRX_LOCATIONS.get(random.nextInt(MRX_LOCATIONS.size())));
+			var model = new MyModelFactory().build(setup, mrX, ImmutableList.of(
+					new Player(RED, defaultDetectiveTickets(), 26),
+					new Player(GREEN, defaultDetectiveTickets(), 50),
+					new Player(BLUE, defaultDetectiveTickets(), 94)));
+			var everyMove = new MrXLocationTracker(setup);
+			model.registerObserver(everyMove);
+			var skipping = new MrXLocationTracker(setup);
+			int location = mrX.location();
+			while (model.getCurrentBoard().getWinner().isEmpty()) {
+				var board = model.getCurrentBoard();
+				// like an AI playing one detective, only sees some of the boards
+				if (random.nextInt(3) == 0) {
+					skipping.update(board);
+					assertThat(skipping.contains(location)).isTrue();
+					for (int node : setup.graph.nodes()) {
+						if (everyMove.contains(node))
+							assertThat(skipping.contains(node)).isTrue();
+					}
+				}
+				var moves = board.getAvailableMoves().asList();
+				Move move = moves.get(random.nextInt(moves.size()));
+				model.chooseMove(move);
+				if (move.commencedBy() == MRX) {
+					location = move.visit(new Move.FunctionalVisitor<Integer>(
+							m -> m.destination, m -> m.destination2));
+				}
+			}
+		}
+	}
+
+	@Test public void testCatchesUpAndResets() {
+		var tracker = new MrXLocationTracker(setup.compactGraph(), ImmutableList.of(1));
+		tracker.update(board(100, LogEntry.hidden(TAXI), LogEntry.hidden(TAXI)));
+		assertThat(tracker.entries()).isEqualTo(2);
+		assertThat(tracker.size()).isGreaterThan(2);
+		// a shorter log is a new game
+		tracker.update(board(100, LogEntry.hidden(TAXI)));
+		assertThat(tracker.entries()).isEqualTo(1);
+		assertThat(tracker.size()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,118 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import uk.ac.bris.cs.scotlandyard.model.Bitboard;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link Reachability} against a plain walk of the game graph
+ */
+public class ReachabilityTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static void walk(int node, int taxi, int bus, int underground, int moves,
+	                         Set<Integer> exactly, Set<Integer> atMost) {
+		atMost.add(node);
+		if (moves == 0) {
+			exactly.add(node);
+			return;
+		}
+		for (int next : setup.graph.adjacentNodes(node)) {
+			for (Transport transport : setup.graph.edgeValueOrDefault(node, next, null)) {
+				switch (transport) {
+					case TAXI:
+						if (taxi > 0) walk(next, taxi - 1, bus, underground, moves - 1, exactly, atMost);
+						break;
+					case BUS:
+						if (bus > 0) walk(next, taxi, bus - 1, underground, moves - 1, exactly, atMost);
+						break;
+					case UNDERGROUND:
+						if (underground > 0)
+							walk(next, taxi, bus, underground - 1, moves - 1, exactly, atMost);
+						break;
+					default:
+				}
+			}
+		}
+	}
+
+	private static Set<Integer> stations(long[] board) {
+		var stations = new HashSet<Integer>();
+		for (int node = Bitboard.nextSetBit(board, 0); node >= 0;
+		     node = Bitboard.nextSetBit(board, node + 1)) stations.add(node);
+		return stations;
+	}
+
+	@Test public void testMatchesWalkingTheGraph() {
+		var reachability = new Reachability(setup.compactGraph());
+		int[][] ticketCounts = {{10, 8, 4}, {1, 0, 2}, {0, 3, 0}, {2, 1, 1}, {0, 0, 0}};
+		for (int location : new int[]{1, 13, 46, 89, 140, 199}) {
+			for (int[] counts : ticketCounts) {
+				for (int k = 0; k <= 3; k++) {
+					var exactly = new HashSet<Integer>();
+					var atMost = new HashSet<Integer>();
+					walk(location, counts[0], counts[1], counts[2], k, exactly, atMost);
+					assertThat(stations(reachability.reachable(location,
+							counts[0], counts[1], counts[2], k, true)))
+							.as("exactly %d from %d", k, location).isEqualTo(exactly);
+					assertThat(stations(reachability.reachable(location,
+							counts[0], counts[1], counts[2], k, false)))
+							.as("at most %d from %d", k, location).isEqualTo(atMost);
+				}
+			}
+		}
+	}
+
+	@Test public void testMemoizesByClampedTickets() {
+		var reachability = new Reachability(setup.compactGraph());
+		var player = new Player(RED, defaultDetectiveTickets(), 13);
+		var first = reachability.atMost(player, 2);
+		assertThat(reachability.atMost(player, 2)).isSameAs(first);
+		// more of every ticket than moves makes no difference
+		var rich = new Player(RED, ImmutableMap.of(Ticket.TAXI, 20, Ticket.BUS, 20,
+				Ticket.UNDERGROUND, 20), 13);
+		assertThat(reachability.atMost(rich, 2)).isSameAs(first);
+		assertThat(reachability.exactly(player, 2)).isNotSameAs(first);
+		assertThat(reachability.cacheSize()).isEqualTo(2);
+		reachability.clear();
+		assertThat(reachability.cacheSize()).isZero();
+	}
+
+	@Test public void testHandlesEdgeCases() {
+		var reachability = new Reachability(setup.compactGraph());
+		var stuck = new Player(RED, ImmutableMap.of(), 13);
+		assertThat(stations(reachability.atMost(stuck, 3))).containsExactly(13);
+		assertThat(stations(reachability.exactly(stuck, 1))).isEmpty();
+		assertThat(stations(reachability.exactly(stuck, 0))).containsExactly(13);
+		assertThatThrownBy(() -> reachability.reachable(0, 1, 1, 1, 1, true))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> reachability.reachable(1, 1, 1, 1, -1, true))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
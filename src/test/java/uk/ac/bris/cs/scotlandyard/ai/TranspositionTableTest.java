@@ -0,0 +1,111 @@
+package uk.ac.bris.cs.scotlandyard.ai;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.bris.cs.scotlandyard.ai.TranspositionTable.Bound;
+import uk.ac.bris.cs.scotlandyard.model.IntMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+
+/**
+ * Tests {@link TranspositionTable}
+ */
+public class TranspositionTableTest {
+
+	// keys that differ only above the bucket bits of a 1MB table, so they share a bucket
+	private static final long KEY = 0x1234_5678L;
+	private static final long SAME_BUCKET = KEY | 1L << 62;
+	private static final long OTHER_SAME_BUCKET = KEY | 1L << 61;
+
+	@Test public void testStoresAndUnpacks() {
+		var table = new TranspositionTable(1);
+		assertThat(table.probe(KEY)).isEqualTo(TranspositionTable.MISS);
+		int move = IntMove.twice(MRX, TAXI, 1, SECRET, 200);
+		table.store(KEY, move, -1234, 7, Bound.LOWER);
+		long data = table.probe(KEY);
+		assertThat(TranspositionTable.move(data)).isEqualTo(move);
+		assertThat(TranspositionTable.score(data)).isEqualTo(-1234);
+		assertThat(TranspositionTable.depth(data)).isEqualTo(7);
+		assertThat(TranspositionTable.bound(data)).isEqualTo(Bound.LOWER);
+		assertThat(table.probe(SAME_BUCKET)).isEqualTo(TranspositionTable.MISS);
+	}
+
+	@Test public void testClampsAndKeepsMoves() {
+		var table = new TranspositionTable(1);
+		int move = IntMove.single(MRX, TAXI, 1);
+		table.store(KEY, move, 100_000, 1000, Bound.EXACT);
+		table.store(KEY, IntMove.NONE, -100_000, 3, Bound.UPPER);
+		long data = table.probe(KEY);
+		assertThat(TranspositionTable.move(data)).isEqualTo(move);
+		assertThat(TranspositionTable.score(data)).isEqualTo(TranspositionTable.MIN_SCORE);
+		assertThat(TranspositionTable.depth(data)).isEqualTo(3);
+		assertThat(TranspositionTable.bound(data)).isEqualTo(Bound.UPPER);
+		table.store(KEY, IntMove.NONE, 0, 1000, Bound.EXACT);
+		assertThat(TranspositionTable.depth(table.probe(KEY)))
+				.isEqualTo(TranspositionTable.MAX_DEPTH);
+	}
+
+	@Test public void testDeepEntriesSurviveShallowOnes() {
+		var table = new TranspositionTable(1);
+		table.store(KEY, 1, 1, 10, Bound.EXACT);
+		table.store(SAME_BUCKET, 2, 2, 2, Bound.EXACT);
+		table.store(OTHER_SAME_BUCKET, 3, 3, 3, Bound.EXACT);
+		// the deep entry stays, the shallow ones take turns in the always-replace slot
+		assertThat(TranspositionTable.move(table.probe(KEY))).isEqualTo(1);
+		assertThat(table.probe(SAME_BUCKET)).isEqualTo(TranspositionTable.MISS);
+		assertThat(TranspositionTable.move(table.probe(OTHER_SAME_BUCKET))).isEqualTo(3);
+		// until a new search makes the deep entry stale
+		table.newSearch();
+		table.store(SAME_BUCKET, 2, 2, 2, Bound.EXACT);
+		assertThat(table.probe(KEY)).isEqualTo(TranspositionTable.MISS);
+		assertThat(TranspositionTable.move(table.probe(SAME_BUCKET))).isEqualTo(2);
+	}
+
+	@Test public void testClearAndFill() {
+		var table = new TranspositionTable(1);
+		assertThat(table.capacity()).isEqualTo(1024 * 1024 / 16);
+		for (long key = 1; key <= table.capacity(); key++) table.store(key, 0, 0, 0, Bound.EXACT);
+		// consecutive keys get a bucket each, so only the depth-preferred slots fill up
+		assertThat(table.hashfull()).isEqualTo(500);
+		table.clear();
+		assertThat(table.hashfull()).isZero();
+		assertThat(table.probe(1)).isEqualTo(TranspositionTable.MISS);
+		assertThatThrownBy(() -> new TranspositionTable(0))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testConcurrentUseNeverReturnsForeignData() throws InterruptedException {
+		var table = new TranspositionTable(1);
+		var wrong = new AtomicInteger();
+		var threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			var random = new SplittableRandom(t);
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 200_000; i++) {
+					// few keys so threads keep colliding; the data is derived from the key
+					long key = random.nextLong(4096) * 0x9E3779B97F4A7C15L;
+					if (random.nextBoolean()) {
+						table.store(key, (int) key & 0x3FFFFFFF, (short) (key >>> 20),
+								(int) (key >>> 40) & 0xFF, Bound.EXACT);
+					} else {
+						long data = table.probe(key);
+						if (data != TranspositionTable.MISS
+								&& TranspositionTable.move(data) != ((int) key & 0x3FFFFFFF))
+							wrong.incrementAndGet();
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) thread.start();
+		for (Thread thread : threads) thread.join();
+		assertThat(wrong.get()).isZero();
+	}
+}
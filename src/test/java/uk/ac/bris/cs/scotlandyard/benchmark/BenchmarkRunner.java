@@ -0,0 +1,31 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, for tracking them over time. The GC
+ * profiler is always on, so every result comes with the bytes allocated per operation.
+ * <br>
+ * Arguments, both optional: a regular expression of the benchmarks to run (all of this package)
+ * and the file to write the results to ({@code target/jmh-result.json}). With the
+ * {@code benchmark} profile, {@code mvn -P benchmark test-compile exec:exec} runs everything.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {}
+
+	public static void main(String[] args) throws RunnerException {
+		var include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + "\\.";
+		var result = args.length > 1 ? args[1] : "target/jmh-result.json";
+		new Runner(new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(result)
+				.build()).run();
+	}
+}
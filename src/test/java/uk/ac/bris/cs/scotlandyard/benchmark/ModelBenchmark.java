@@ -0,0 +1,189 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.io.Resources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.BenchmarkHooks;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+/**
+ * Microbenchmarks of the game model's hot operations, on positions from seeded random playouts
+ * of the standard game with five detectives.
+ * <br>
+ * Every benchmark cycles through {@link #SAMPLES} different positions so that the results are
+ * not those of one lucky position. Run with {@link BenchmarkRunner}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	/**
+	 * The number of positions of each kind, a power of two
+	 */
+	static final int SAMPLES = 64;
+
+	private final MyGameStateFactory factory = new MyGameStateFactory();
+	private GameSetup setup;
+	private String graph;
+
+	private final Player[] mrXs = new Player[SAMPLES];
+	private final List<ImmutableList<Player>> detectives = new ArrayList<>();
+	private final GameState[] states = new GameState[SAMPLES];
+	private final GameState[] mrXSingleStates = new GameState[SAMPLES];
+	private final Move[] mrXSingleMoves = new Move[SAMPLES];
+	private final GameState[] mrXDoubleStates = new GameState[SAMPLES];
+	private final Move[] mrXDoubleMoves = new Move[SAMPLES];
+	private final GameState[] detectiveStates = new GameState[SAMPLES];
+	private final Move[] detectiveMoves = new Move[SAMPLES];
+	private final GameState[][] mrXTurns = new GameState[3][SAMPLES];
+	// a ticket each of mrXs holds
+	private final Ticket[] tickets = new Ticket[SAMPLES];
+	private int index;
+
+	@Setup public void setUp() throws IOException {
+		setup = Playouts.standardSetup();
+		graph = Resources.toString(Resources.getResource("graph.txt"), StandardCharsets.UTF_8);
+		var random = new Random(42);
+		int all = 0, mrXSingles = 0, mrXDoubles = 0, detectiveTurns = 0, mrXTurnCount = 0;
+		// play games until there are enough positions of every kind
+		for (int seed = 0; mrXSingles < SAMPLES || mrXDoubles < SAMPLES
+				|| detectiveTurns < SAMPLES || mrXTurnCount < SAMPLES; seed++) {
+			for (var position : Playouts.play(setup, seed, 5)) {
+				if (all < SAMPLES) {
+					mrXs[all] = position.mrX;
+					detectives.add(position.detectives);
+					states[all++] = position.state;
+				}
+				var moves = position.state.getAvailableMoves().asList();
+				if (!position.isMrXTurn()) {
+					if (detectiveTurns < SAMPLES) {
+						detectiveStates[detectiveTurns] = position.state;
+						detectiveMoves[detectiveTurns++] = moves.get(random.nextInt(moves.size()));
+					}
+					continue;
+				}
+				var singles = new ArrayList<Move>();
+				var doubles = new ArrayList<Move>();
+				for (Move move : moves)
+					(move instanceof Move.SingleMove ? singles : doubles).add(move);
+				if (mrXSingles < SAMPLES && !singles.isEmpty()) {
+					mrXSingleStates[mrXSingles] = position.state;
+					mrXSingleMoves[mrXSingles++] = singles.get(random.nextInt(singles.size()));
+				}
+				if (mrXDoubles < SAMPLES && !doubles.isEmpty()) {
+					mrXDoubleStates[mrXDoubles] = position.state;
+					mrXDoubleMoves[mrXDoubles++] = doubles.get(random.nextInt(doubles.size()));
+				}
+				// the same places again as fresh games, with a set number of double tickets
+				if (mrXTurnCount < SAMPLES) {
+					for (int doubleTickets = 0; doubleTickets < mrXTurns.length; doubleTickets++) {
+						var counts = new HashMap<>(position.mrX.tickets());
+						counts.put(Ticket.DOUBLE, doubleTickets);
+						mrXTurns[doubleTickets][mrXTurnCount] = factory.build(setup,
+								new Player(position.mrX.piece(), ImmutableMap.copyOf(counts),
+										position.mrX.location()),
+								position.detectives);
+					}
+					mrXTurnCount++;
+				}
+			}
+		}
+		for (int i = 0; i < SAMPLES; i++) {
+			var held = new ArrayList<Ticket>();
+			for (Ticket ticket : Ticket.values()) if (mrXs[i].has(ticket)) held.add(ticket);
+			tickets[i] = held.get(random.nextInt(held.size()));
+		}
+	}
+
+	private int next() { return index = (index + 1) & (SAMPLES - 1); }
+
+	@Benchmark public GameState build() {
+		int i = next();
+		return factory.build(setup, mrXs[i], detectives.get(i));
+	}
+
+	@Benchmark public GameState advanceMrXSingle() {
+		int i = next();
+		return mrXSingleStates[i].advance(mrXSingleMoves[i]);
+	}
+
+	@Benchmark public GameState advanceMrXDouble() {
+		int i = next();
+		return mrXDoubleStates[i].advance(mrXDoubleMoves[i]);
+	}
+
+	@Benchmark public GameState advanceDetective() {
+		int i = next();
+		return detectiveStates[i].advance(detectiveMoves[i]);
+	}
+
+	// states memoize their moves, so they are made again without the memo
+	private ImmutableSet<Move> availableMoves(GameState[] states) {
+		return BenchmarkHooks.makeMoves(states[next()]);
+	}
+
+	@Benchmark public ImmutableSet<Move> availableMovesNoDouble() {
+		return availableMoves(mrXTurns[0]);
+	}
+
+	@Benchmark public ImmutableSet<Move> availableMovesOneDouble() {
+		return availableMoves(mrXTurns[1]);
+	}
+
+	@Benchmark public ImmutableSet<Move> availableMovesTwoDoubles() {
+		return availableMoves(mrXTurns[2]);
+	}
+
+	// the winner isn't exposed on its own, as states work it out when they are made
+	@Benchmark public ImmutableSet<Piece> determineWinner() {
+		return BenchmarkHooks.determineWinner(factory, states[next()]);
+	}
+
+	@Benchmark public ImmutableValueGraph<Integer, ImmutableSet<Transport>> readGraph() {
+		return ScotlandYard.readGraph(graph);
+	}
+
+	@Benchmark public Player playerUse() {
+		int i = next();
+		return mrXs[i].use(tickets[i]);
+	}
+
+	@Benchmark public Player playerGive() {
+		int i = next();
+		return mrXs[i].give(tickets[i]);
+	}
+}
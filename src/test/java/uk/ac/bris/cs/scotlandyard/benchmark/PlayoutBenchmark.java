@@ -0,0 +1,86 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+
+/**
+ * Whole games of the standard 24 rounds with uniformly random moves, the end to end measure of
+ * how fast the model plays.
+ * <br>
+ * {@link #game()} gives games per second; {@link #advance()} gives the time of one move. Run with
+ * the GC profiler, as {@link BenchmarkRunner} does, {@code gc.alloc.rate.norm} of
+ * {@link #advance()} is the bytes allocated per advance.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+
+	@Param({"1", "5"})
+	public int detectives;
+
+	private GameSetup setup;
+	private final GameState[] starts = new GameState[ModelBenchmark.SAMPLES];
+	private final GameState[] states = new GameState[ModelBenchmark.SAMPLES];
+	private final Move[] moves = new Move[ModelBenchmark.SAMPLES];
+	private final Random random = new Random(42);
+	private int index;
+
+	@Setup public void setUp() {
+		setup = Playouts.standardSetup();
+		for (int i = 0; i < starts.length; i++)
+			starts[i] = Playouts.start(setup, i, detectives).state;
+		int sampled = 0;
+		for (int seed = 0; sampled < states.length; seed++) {
+			for (var position : Playouts.play(setup, seed, detectives)) {
+				if (sampled == states.length) break;
+				states[sampled] = position.state;
+				moves[sampled++] = MoveGenerator.of(position.state).randomMove(random).orElseThrow();
+			}
+		}
+	}
+
+	private int next() { return index = (index + 1) & (ModelBenchmark.SAMPLES - 1); }
+
+	/**
+	 * @return the number of moves the game took
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public int game() {
+		GameState state = starts[next()];
+		int played = 0;
+		while (state.getWinner().isEmpty()) {
+			state = state.advance(MoveGenerator.of(state).randomMove(random).orElseThrow());
+			played++;
+		}
+		return played;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public GameState advance() {
+		int i = next();
+		return states[i].advance(moves[i]);
+	}
+}
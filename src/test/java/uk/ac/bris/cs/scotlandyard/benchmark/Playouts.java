@@ -0,0 +1,122 @@
+package uk.ac.bris.cs.scotlandyard.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board;
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.GameSetup;
+import uk.ac.bris.cs.scotlandyard.model.Move;
+import uk.ac.bris.cs.scotlandyard.model.MoveGenerator;
+import uk.ac.bris.cs.scotlandyard.model.MyGameStateFactory;
+import uk.ac.bris.cs.scotlandyard.model.Piece;
+import uk.ac.bris.cs.scotlandyard.model.Piece.Detective;
+import uk.ac.bris.cs.scotlandyard.model.Player;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+/**
+ * Seeded random games on the standard map, the source of the positions benchmarks run on
+ */
+final class Playouts {
+
+	private Playouts() {}
+
+	/**
+	 * A position reached in a playout, with the players that make it up
+	 */
+	static final class Position {
+		final GameState state;
+		final Player mrX;
+		final ImmutableList<Player> detectives;
+
+		Position(GameState state, Player mrX, ImmutableList<Player> detectives) {
+			this.state = state;
+			this.mrX = mrX;
+			this.detectives = detectives;
+		}
+
+		/**
+		 * @return whether it is MrX's turn
+		 */
+		boolean isMrXTurn() {
+			return state.getAvailableMoves().iterator().next().commencedBy().isMrX();
+		}
+	}
+
+	/**
+	 * @return the standard 24 round setup on graph.txt
+	 */
+	@Nonnull static GameSetup standardSetup() {
+		try {
+			return new GameSetup(ScotlandYard.standardGraph(), ScotlandYard.STANDARD24ROUNDS);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param setup the setup
+	 * @param seed the seed of the starting locations
+	 * @param detectives the number of detectives
+	 * @return MrX and the detectives with default tickets, at locations picked like the game does
+	 */
+	@Nonnull static Position start(@Nonnull GameSetup setup, int seed, int detectives) {
+		var mrX = new Player(Piece.MrX.MRX, ScotlandYard.defaultMrXTickets(),
+				ScotlandYard.generateMrXLocation(seed));
+		var locations = ScotlandYard.generateDetectiveLocations(seed, detectives);
+		var pieces = ScotlandYard.DETECTIVES.asList();
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < detectives; i++)
+			builder.add(new Player(pieces.get(i), ScotlandYard.defaultDetectiveTickets(),
+					locations.get(i)));
+		var players = builder.build();
+		return new Position(new MyGameStateFactory().build(setup, mrX, players), mrX, players);
+	}
+
+	/**
+	 * Plays a game with uniformly random moves
+	 *
+	 * @param setup the setup
+	 * @param seed the seed of the starting locations and of the moves
+	 * @param detectives the number of detectives
+	 * @return every position of the game before it was won, in order
+	 */
+	@Nonnull static List<Position> play(@Nonnull GameSetup setup, int seed, int detectives) {
+		var random = new Random(seed);
+		var position = start(setup, seed, detectives);
+		var positions = new ArrayList<Position>();
+		int mrXLocation = position.mrX.location();
+		while (position.state.getWinner().isEmpty()) {
+			positions.add(position);
+			Move move = MoveGenerator.of(position.state).randomMove(random).orElseThrow();
+			var next = position.state.advance(move);
+			if (move.commencedBy().isMrX()) {
+				mrXLocation = move.visit(new Move.FunctionalVisitor<Integer>(
+						m -> m.destination, m -> m.destination2));
+			}
+			position = new Position(next, player(next, Piece.MrX.MRX, mrXLocation),
+					position.detectives.stream()
+							.map(d -> player(next, d.piece(), next.getDetectiveLocation(
+									(Detective) d.piece()).orElseThrow()))
+							.collect(ImmutableList.toImmutableList()));
+		}
+		return positions;
+	}
+
+	private static Player player(Board board, Piece piece, int location) {
+		var tickets = board.getPlayerTickets(piece).orElseThrow();
+		var counts = new EnumMap<Ticket, Integer>(Ticket.class);
+		for (Ticket ticket : Ticket.values()) counts.put(ticket, tickets.getCount(ticket));
+		return new Player(piece, ImmutableMap.copyOf(counts), location);
+	}
+}
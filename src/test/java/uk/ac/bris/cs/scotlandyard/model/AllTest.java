@@ -15,6 +15,18 @@ import org.junit.runners.Suite;
 		GameStateDetectivesAvailableMovesTest.class,
 		GameStateMrXAvailableMovesTest.class,
 		GameStatePlayoutTest.class,
-		ModelObserverTest.class
+		ModelObserverTest.class,
+		PackedGameStateTest.class,
+		ImmutableBoardTest.class,
+		MoveGeneratorTest.class,
+		IntMoveTest.class,
+		MoveTableTest.class,
+		ZobristTest.class,
+		DistanceOracleTest.class,
+		PlayerTest.class,
+		TravelLogTest.class,
+		DeadlineTest.class,
+		SearchStateTest.class,
+		CompactGraphTest.class
 })
 public class AllTest {}
@@ -0,0 +1,34 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+/**
+ * Exposes the package-private parts of {@link MyGameStateFactory} the benchmarks measure, so
+ * renaming them breaks the build rather than the benchmarks
+ */
+public final class BenchmarkHooks {
+
+	private BenchmarkHooks() {}
+
+	/**
+	 * @param factory the factory that made the state
+	 * @param state a state made by {@link MyGameStateFactory}
+	 * @return the winner, worked out again
+	 */
+	@Nonnull public static ImmutableSet<Piece> determineWinner(@Nonnull MyGameStateFactory factory,
+	                                                           @Nonnull GameState state) {
+		return factory.determineWinner(state);
+	}
+
+	/**
+	 * @param state a state made by {@link MyGameStateFactory}
+	 * @return the available moves, made again rather than taken from the state's memo
+	 */
+	@Nonnull public static ImmutableSet<Move> makeMoves(@Nonnull GameState state) {
+		return MyGameStateFactory.makeMoves(state);
+	}
+}
@@ -0,0 +1,52 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ValueGraphBuilder;
+
+import org.junit.Test;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link CompactGraph}
+ */
+public class CompactGraphTest {
+
+	private static CompactGraph graph() {
+		return CompactGraph.of(ValueGraphBuilder.undirected()
+				.<Integer, ImmutableSet<Transport>>immutable()
+				.addNode(1)
+				.addNode(2)
+				.addNode(3)
+				.addNode(5)
+				.putEdgeValue(1, 2, ImmutableSet.of(Transport.BUS, Transport.FERRY))
+				.putEdgeValue(1, 3, ImmutableSet.of(Transport.TAXI)).build());
+	}
+
+	@Test public void testNodesAndEdges() {
+		var graph = graph();
+		assertThat(graph.maxNode()).isEqualTo(5);
+		assertThat(graph.nodeCount()).isEqualTo(4);
+		assertThat(graph.edgeCount()).isEqualTo(4);
+		assertThat(graph.contains(4)).isFalse();
+		assertThat(graph.contains(5)).isTrue();
+		assertThat(graph.degree(1)).isEqualTo(2);
+		assertThat(graph.degree(5)).isZero();
+	}
+
+	@Test public void testEdgeTransports() {
+		var graph = graph();
+		int edge = graph.edge(2, 1);
+		assertThat(graph.target(edge)).isEqualTo(1);
+		assertThat(graph.transports(edge)).isEqualTo(
+				CompactGraph.bit(Transport.BUS) | CompactGraph.bit(Transport.FERRY));
+		assertThat(graph.edge(2, 3)).isEqualTo(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class) public void testMissingNodeShouldThrow() {
+		graph().firstEdge(4);
+	}
+
+}
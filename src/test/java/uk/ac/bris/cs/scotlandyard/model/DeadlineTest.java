@@ -0,0 +1,52 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.atlassian.fugue.Pair;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+
+/**
+ * Tests the cancellable {@link Deadline} of {@link Ai#pickMove(Board, Deadline)}
+ */
+public class DeadlineTest {
+
+	@Test public void testExpiresWithTime() {
+		var deadline = Deadline.after(0, TimeUnit.SECONDS);
+		assertThat(deadline.isExpired()).isTrue();
+		assertThat(deadline.isCancelled()).isFalse();
+		assertThat(deadline.remainingNanos()).isZero();
+		var later = Deadline.of(new Pair<>(1L, TimeUnit.HOURS));
+		assertThat(later.isExpired()).isFalse();
+		assertThat(later.remaining().right()).isEqualTo(TimeUnit.NANOSECONDS);
+		assertThat(later.remaining().left()).isGreaterThan(TimeUnit.MINUTES.toNanos(59));
+		assertThatThrownBy(() -> Deadline.after(-1, TimeUnit.SECONDS))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testCancelEndsItEarly() {
+		var deadline = Deadline.after(1, TimeUnit.HOURS);
+		long end = deadline.nanoTime();
+		deadline.cancel();
+		assertThat(deadline.isExpired()).isTrue();
+		assertThat(deadline.isCancelled()).isTrue();
+		assertThat(deadline.remainingNanos()).isZero();
+		assertThat(deadline.nanoTime()).isEqualTo(end);
+	}
+
+	@Test public void testKeepsTheLastOfferedMove() {
+		var deadline = Deadline.after(1, TimeUnit.HOURS);
+		assertThat(deadline.bestSoFar()).isEmpty();
+		var first = new Move.SingleMove(MRX, 1, TAXI, 8);
+		var second = new Move.SingleMove(MRX, 1, TAXI, 9);
+		deadline.offer(first);
+		deadline.offer(second);
+		assertThat(deadline.bestSoFar()).contains(second);
+		assertThatThrownBy(() -> deadline.offer(null)).isInstanceOf(NullPointerException.class);
+	}
+}
@@ -0,0 +1,160 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.graph.ImmutableValueGraph;
+import com.google.common.graph.ValueGraphBuilder;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Transport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link DistanceOracle} against a plain breadth first search of the game graph
+ */
+public class DistanceOracleTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static Map<Integer, Integer> search(int source, Predicate<ImmutableSet<Transport>> usable) {
+		var distances = new HashMap<Integer, Integer>();
+		var queue = new ArrayDeque<Integer>();
+		distances.put(source, 0);
+		queue.add(source);
+		while (!queue.isEmpty()) {
+			int node = queue.remove();
+			for (int next : setup.graph.adjacentNodes(node)) {
+				if (distances.containsKey(next)
+						|| !usable.test(setup.graph.edgeValueOrDefault(node, next, ImmutableSet.of())))
+					continue;
+				distances.put(next, distances.get(node) + 1);
+				queue.add(next);
+			}
+		}
+		return distances;
+	}
+
+	private static void assertMatches(int subgraph, Predicate<ImmutableSet<Transport>> usable) {
+		var oracle = setup.distanceOracle();
+		for (int from : setup.graph.nodes()) {
+			var expected = search(from, usable);
+			for (int to : setup.graph.nodes()) {
+				assertThat(oracle.distance(subgraph, from, to))
+						.as("%d to %d in subgraph %d", from, to, subgraph)
+						.isEqualTo(expected.getOrDefault(to, DistanceOracle.UNREACHABLE));
+			}
+		}
+	}
+
+	@Test public void testMatchesBreadthFirstSearch() {
+		assertMatches(CompactGraph.ANY, transports -> true);
+		assertMatches(DistanceOracle.DETECTIVE, transports -> !transports.equals(
+				ImmutableSet.of(Transport.FERRY)));
+		for (Transport transport : Transport.values())
+			assertMatches(transport.ordinal(), transports -> transports.contains(transport));
+	}
+
+	@Test public void testDistancesAreSymmetricAndOrdered() {
+		var oracle = setup.distanceOracle();
+		assertThat(setup.distanceOracle()).isSameAs(oracle);
+		for (int from : setup.graph.nodes()) {
+			for (int to : setup.graph.nodes()) {
+				int any = oracle.distance(from, to);
+				assertThat(oracle.distance(to, from)).isEqualTo(any);
+				assertThat(oracle.detectiveDistance(from, to)).isGreaterThanOrEqualTo(any);
+				assertThat(oracle.distance(Transport.TAXI, from, to))
+						.isGreaterThanOrEqualTo(oracle.detectiveDistance(from, to));
+			}
+		}
+		assertThat(oracle.distance(1, 1)).isZero();
+		assertThat(oracle.distance(1, 0)).isEqualTo(DistanceOracle.UNREACHABLE);
+		assertThat(oracle.distance(1, 10_000)).isEqualTo(DistanceOracle.UNREACHABLE);
+		assertThatThrownBy(() -> oracle.distance(DistanceOracle.SUBGRAPHS, 1, 1))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testRoundTripsThroughFile() throws IOException {
+		var graph = setup.compactGraph();
+		var path = Files.createTempFile("distances", ".bin");
+		try {
+			setup.distanceOracle().write(path);
+			var loaded = DistanceOracle.load(path, graph);
+			assertThat(loaded.fingerprint()).isEqualTo(graph.fingerprint());
+			for (int from : setup.graph.nodes()) {
+				for (int subgraph = 0; subgraph < DistanceOracle.SUBGRAPHS; subgraph++) {
+					for (int to : setup.graph.nodes()) {
+						assertThat(loaded.distance(subgraph, from, to))
+								.isEqualTo(setup.distanceOracle().distance(subgraph, from, to));
+					}
+				}
+			}
+			assertThat(DistanceOracle.cached(path, graph).distance(1, 199))
+					.isEqualTo(setup.distanceOracle().distance(1, 199));
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test public void testCachesStandardGraphNextToGraphTxt()
+			throws IOException, URISyntaxException {
+		var path = Paths.get(Resources.getResource("graph.txt").toURI())
+				.resolveSibling(DistanceOracle.CACHE_FILE);
+		Files.deleteIfExists(path);
+		var graph = setup.compactGraph();
+		var computed = DistanceOracle.forGraph(graph);
+		assertThat(path).isRegularFile();
+		assertThat(DistanceOracle.load(path, graph).distance(1, 199))
+				.isEqualTo(computed.distance(1, 199));
+		// a fresh setup of the standard graph reads the cache
+		var fresh = new GameSetup(setup.graph, STANDARD24ROUNDS);
+		assertThat(fresh.distanceOracle().distance(1, 199)).isEqualTo(computed.distance(1, 199));
+
+		// other graphs neither read nor replace it
+		var other = CompactGraph.of(ValueGraphBuilder.undirected()
+				.<Integer, ImmutableSet<Transport>>immutable()
+				.putEdgeValue(1, 2, ImmutableSet.of(Transport.TAXI))
+				.build());
+		assertThat(DistanceOracle.forGraph(other).distance(1, 2)).isEqualTo(1);
+		assertThat(DistanceOracle.load(path, graph).fingerprint()).isEqualTo(graph.fingerprint());
+	}
+
+	@Test public void testRejectsTablesOfAnotherGraph() throws IOException {
+		ImmutableValueGraph<Integer, ImmutableSet<Transport>> small =
+				ValueGraphBuilder.undirected().<Integer, ImmutableSet<Transport>>immutable()
+						.putEdgeValue(1, 2, ImmutableSet.of(Transport.TAXI))
+						.build();
+		var other = CompactGraph.of(small);
+		assertThat(other.fingerprint()).isNotEqualTo(setup.compactGraph().fingerprint());
+		var path = Files.createTempFile("distances", ".bin");
+		try {
+			setup.distanceOracle().write(path);
+			assertThatThrownBy(() -> DistanceOracle.load(path, other)).isInstanceOf(IOException.class);
+			// the cache recomputes, and replaces the stale file
+			assertThat(DistanceOracle.cached(path, other).distance(1, 2)).isEqualTo(1);
+			assertThat(DistanceOracle.load(path, other).distance(2, 1)).isEqualTo(1);
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.DETECTIVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.DOUBLE;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link ImmutableBoard} snapshots of the game states made by different factories
+ */
+public class ImmutableBoardTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static ImmutableList<Player> detectives(int seed, int count) {
+		var locations = generateDetectiveLocations(seed, count);
+		var pieces = DETECTIVES.asList();
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	@Test public void testSnapshotsOfEitherFactoryAreEqual() {
+		var copy = new GameSetup(setup.graph, setup.rounds);
+		assertThat(copy).isEqualTo(setup).hasSameHashCodeAs(setup);
+		var mrX = new Player(MRX, defaultMrXTickets(), generateMrXLocation(7));
+		var detectives = detectives(7, 3);
+		GameState expected = new MyGameStateFactory().build(setup, mrX, detectives);
+		GameState actual = new PackedGameStateFactory().build(copy, mrX, detectives);
+		var random = new Random(7);
+		ImmutableBoard previous = null;
+		while (expected.getWinner().isEmpty()) {
+			var snapshot = new ImmutableBoard(expected);
+			assertThat(new ImmutableBoard(actual))
+					.isEqualTo(snapshot).hasSameHashCodeAs(snapshot);
+			assertThat(new ImmutableBoard(snapshot)).isEqualTo(snapshot);
+			assertThat(snapshot).isNotEqualTo(previous);
+			previous = snapshot;
+			var moves = expected.getAvailableMoves().asList();
+			var move = moves.get(random.nextInt(moves.size()));
+			expected = expected.advance(move);
+			actual = actual.advance(move);
+		}
+	}
+
+	@Test public void testSnapshotsCountTicketsPlayersWereNotMadeWith() {
+		// snapshots of MyGameStateFactory's states take the players' maps, which lack BUS here
+		var mrX = new Player(MRX, ImmutableMap.of(TAXI, 24, SECRET, 5, DOUBLE, 2),
+				generateMrXLocation(4));
+		var detectives = detectives(4, 2);
+		GameState expected = new MyGameStateFactory().build(setup, mrX, detectives);
+		GameState actual = new PackedGameStateFactory().build(setup, mrX, detectives);
+		var random = new Random(4);
+		for (int i = 0; i < 8 && expected.getWinner().isEmpty(); i++) {
+			var snapshot = new ImmutableBoard(expected);
+			assertThat(snapshot.getPlayerTickets(MRX).orElseThrow().getCount(BUS)).isZero();
+			assertThat(snapshot).isEqualTo(new ImmutableBoard(actual))
+					.hasSameHashCodeAs(new ImmutableBoard(actual));
+			var moves = expected.getAvailableMoves().asList();
+			var move = moves.get(random.nextInt(moves.size()));
+			expected = expected.advance(move);
+			actual = actual.advance(move);
+		}
+	}
+
+	@Test public void testWithoutAvailableMovesOnlyHidesTheMoves() {
+		var state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), generateMrXLocation(3)), detectives(3, 2));
+		var snapshot = new ImmutableBoard(state);
+		var hidden = snapshot.withoutAvailableMoves();
+		assertThat(hidden.getAvailableMoves()).isEmpty();
+		assertThat(hidden.getPlayers()).isEqualTo(snapshot.getPlayers());
+		assertThat(hidden.getMrXTravelLog()).isEqualTo(snapshot.getMrXTravelLog());
+		assertThat(hidden.getWinner()).isEqualTo(snapshot.getWinner());
+		assertThat(snapshot.getAvailableMoves()).isEqualTo(state.getAvailableMoves());
+	}
+}
@@ -0,0 +1,123 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.UNDERGROUND;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link IntMove} and {@link IntMoveList}
+ */
+public class IntMoveTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	@Test public void testRoundTrip() {
+		var single = new SingleMove(BLUE, 13, BUS, 1023);
+		int encoded = IntMove.of(single);
+		assertThat(encoded).isNotNegative();
+		assertThat(IntMove.isDouble(encoded)).isFalse();
+		assertThat(IntMove.piece(encoded)).isEqualTo(BLUE);
+		assertThat(IntMove.finalDestination(encoded)).isEqualTo(1023);
+		assertThat(IntMove.toMove(encoded, 13)).isEqualTo(single);
+
+		var x2 = new DoubleMove(MRX, 1, SECRET, 8, UNDERGROUND, 199);
+		encoded = IntMove.of(x2);
+		assertThat(encoded).isNotNegative();
+		assertThat(IntMove.isDouble(encoded)).isTrue();
+		assertThat(IntMove.finalDestination(encoded)).isEqualTo(199);
+		assertThat(IntMove.toMove(encoded, 1)).isEqualTo(x2);
+		assertThat(IntMove.visit(encoded, 1, new Move.FunctionalVisitor<Integer>(
+				m -> m.destination, m -> m.destination1))).isEqualTo(8);
+	}
+
+	@Test public void testEncodingIsCanonical() {
+		// every distinct move of a piece from one source gets its own code
+		GameState state = new MyGameStateFactory().build(setup,
+				new Player(MRX, defaultMrXTickets(), 86),
+				ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13)));
+		var codes = new HashSet<Integer>();
+		for (Move move : state.getAvailableMoves()) {
+			int encoded = IntMove.of(move);
+			assertThat(codes.add(encoded)).isTrue();
+			assertThat(IntMove.toMove(encoded, move.source())).isEqualTo(move);
+		}
+		assertThat(codes).hasSize(state.getAvailableMoves().size());
+	}
+
+	@Test public void testRejectsWhatCannotBeEncoded() {
+		assertThatThrownBy(() -> IntMove.single(MRX, TAXI, 1024))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> IntMove.single(MRX, TAXI, -1))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> IntMove.ticket2(IntMove.single(MRX, TAXI, 1)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test public void testListGrowsAndClears() {
+		var list = new IntMoveList(0);
+		for (int i = 0; i < 100; i++) list.add(IntMove.single(RED, TAXI, i));
+		assertThat(list.size()).isEqualTo(100);
+		assertThat(IntMove.destination(list.get(42))).isEqualTo(42);
+		list.swap(0, 99);
+		assertThat(IntMove.destination(list.get(0))).isEqualTo(99);
+		assertThat(list.contains(IntMove.single(RED, TAXI, 50))).isTrue();
+		assertThat(list.contains(IntMove.single(RED, BUS, 50))).isFalse();
+		assertThatThrownBy(() -> list.get(100)).isInstanceOf(IndexOutOfBoundsException.class);
+		list.clear();
+		assertThat(list.isEmpty()).isTrue();
+		assertThat(list.toArray()).isEmpty();
+	}
+
+	@Test public void testSearchStateAppliesEncodedMoves() {
+		var random = new Random(7);
+		var mrX = new Player(MRX, defaultMrXTickets(), 86);
+		var detectives = ImmutableList.of(
+				new Player(RED, defaultDetectiveTickets(), 13),
+				new Player(BLUE, defaultDetectiveTickets(), 94));
+		GameState reference = new MyGameStateFactory().build(setup, mrX, detectives);
+		var search = SearchState.of(setup, mrX, detectives);
+		var initial = search.toString();
+		while (reference.getWinner().isEmpty()) {
+			var moves = IntMoveList.of(search);
+			assertThat(moves.size()).isEqualTo(reference.getAvailableMoves().size());
+			int move = moves.get(random.nextInt(moves.size()));
+			int source = search.location(search.indexOf(IntMove.piece(move)));
+			reference = reference.advance(IntMove.toMove(move, source));
+			search.apply(move);
+			assertThat(search.lastMove()).isEqualTo(move);
+		}
+		while (search.depth() > 0) search.undo();
+		assertThat(search.lastMove()).isEqualTo(IntMove.NONE);
+		assertThat(search.toString()).isEqualTo(initial);
+	}
+}
@@ -0,0 +1,194 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.DETECTIVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Checks that every {@link MoveGenerator} streams, counts and samples exactly the moves of
+ * {@link Board#getAvailableMoves()} during seeded random games
+ */
+public class MoveGeneratorTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static Player mrX(int seed) {
+		return new Player(MRX, defaultMrXTickets(), generateMrXLocation(seed));
+	}
+
+	private static ImmutableList<Player> detectives(int seed) {
+		int count = 1 + seed % 5;
+		var locations = generateDetectiveLocations(seed, count);
+		var pieces = DETECTIVES.asList();
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	private static List<Move> streamed(MoveGenerator generator) {
+		var moves = new ArrayList<Move>();
+		assertThat(generator.forEachMove(moves::add)).isTrue();
+		return moves;
+	}
+
+	private static void assertGenerates(MoveGenerator generator, ImmutableSet<Move> expected) {
+		var moves = streamed(generator);
+		assertThat(generator.countMoves()).isEqualTo(moves.size());
+		if (generator instanceof MoveRules.Position) {
+			for (int i = 0; i < moves.size(); i++)
+				assertThat(MoveRules.nthMove((MoveRules.Position) generator, i))
+						.isEqualTo(moves.get(i));
+		}
+		assertThat(moves).doesNotHaveDuplicates();
+		assertThat(ImmutableSet.copyOf(moves)).isEqualTo(expected);
+		var random = new Random(moves.size());
+		for (int i = 0; i < 4; i++) {
+			var move = generator.randomMove(random);
+			assertThat(move.isPresent()).isEqualTo(!expected.isEmpty());
+			move.ifPresent(m -> assertThat(expected).contains(m));
+		}
+		if (!moves.isEmpty()) {
+			var seen = new ArrayList<Move>();
+			assertThat(generator.forEachMove(move -> {
+				seen.add(move);
+				return false;
+			})).isFalse();
+			assertThat(seen).containsExactly(moves.get(0));
+		}
+	}
+
+	// each new state is checked before anything asks for its moves, then again afterwards
+	private static void assertRandomGames(ScotlandYard.Factory<GameState> factory) {
+		for (int seed = 0; seed < 20; seed++) {
+			var random = new Random(seed);
+			GameState reference = new MyGameStateFactory().build(setup, mrX(seed), detectives(seed));
+			GameState state = factory.build(setup, mrX(seed), detectives(seed));
+			var search = SearchState.of(setup, mrX(seed), detectives(seed));
+			while (true) {
+				var expected = reference.getAvailableMoves();
+				assertGenerates((MoveGenerator) state, expected);
+				assertThat(state.getAvailableMoves()).isEqualTo(expected);
+				assertGenerates((MoveGenerator) state, expected);
+				assertGenerates(search, expected);
+				assertGenerates(new ImmutableBoard(state), expected);
+				if (!reference.getWinner().isEmpty()) break;
+				var move = expected.asList().get(random.nextInt(expected.size()));
+				reference = reference.advance(move);
+				state = state.advance(move);
+				search.apply(move);
+			}
+		}
+	}
+
+	@Test public void testMyGameStateGeneratesAvailableMoves() {
+		assertRandomGames(new MyGameStateFactory());
+	}
+
+	@Test public void testPackedGameStateGeneratesAvailableMoves() {
+		assertRandomGames(new PackedGameStateFactory());
+	}
+
+	// every single move to a neighbour and every double move through one, legal or not
+	private static List<Move> candidates(GameState state) {
+		var moves = new ArrayList<Move>();
+		var graph = setup.compactGraph();
+		for (Piece piece : state.getPlayers()) {
+			int source = piece.isMrX()
+					? ((MoveRules.Position) state).location(0)
+					: state.getDetectiveLocation((Piece.Detective) piece).orElseThrow();
+			for (int source1 : List.of(source, source + 1)) {
+				if (!graph.contains(source1)) continue;
+				for (int e = graph.firstEdge(source1); e < graph.lastEdge(source1); e++) {
+					int middle = graph.target(e);
+					for (Ticket first : Ticket.values()) {
+						moves.add(new Move.SingleMove(piece, source1, first, middle));
+						if (!piece.isMrX()) continue;
+						for (int f = graph.firstEdge(middle); f < graph.lastEdge(middle); f++) {
+							for (Ticket second : Ticket.values())
+								moves.add(new Move.DoubleMove(piece, source1,
+										first, middle, second, graph.target(f)));
+						}
+					}
+				}
+			}
+		}
+		return moves;
+	}
+
+	private static void assertLegality(ScotlandYard.Factory<GameState> factory) {
+		for (int seed = 0; seed < 10; seed++) {
+			var random = new Random(seed);
+			GameState state = factory.build(setup, mrX(seed), detectives(seed));
+			while (true) {
+				for (Move move : candidates(state))
+					assertThat(state.isLegal(move)).isEqualTo(state.getAvailableMoves().contains(move));
+				assertThat(state.isLegal(null)).isFalse();
+				var expected = state.getAvailableMoves();
+				if (expected.isEmpty()) break;
+				var move = expected.asList().get(random.nextInt(expected.size()));
+				var unchecked = state.advanceUnchecked(move);
+				state = state.advance(move);
+				assertThat(unchecked.positionKey()).isEqualTo(state.positionKey());
+			}
+		}
+	}
+
+	@Test public void testMyGameStateChecksLegality() {
+		assertLegality(new MyGameStateFactory());
+	}
+
+	@Test public void testPackedGameStateChecksLegality() {
+		assertLegality(new PackedGameStateFactory());
+	}
+
+	@Test public void testAdaptsOtherBoards() {
+		GameState state = new MyGameStateFactory().build(setup, mrX(1), detectives(1));
+		assertThat(MoveGenerator.of(state)).isSameAs(state);
+		Board board = new Board() {
+			@Override public GameSetup getSetup() { return state.getSetup(); }
+			@Override public ImmutableSet<Piece> getPlayers() { return state.getPlayers(); }
+			@Override public Optional<Integer> getDetectiveLocation(
+					Piece.Detective detective) { return state.getDetectiveLocation(detective); }
+			@Override public Optional<TicketBoard> getPlayerTickets(Piece piece) {
+				return state.getPlayerTickets(piece);
+			}
+			@Override public ImmutableList<LogEntry> getMrXTravelLog() {
+				return state.getMrXTravelLog();
+			}
+			@Override public ImmutableSet<Piece> getWinner() { return state.getWinner(); }
+			@Override public ImmutableSet<Move> getAvailableMoves() {
+				return state.getAvailableMoves();
+			}
+		};
+		assertGenerates(MoveGenerator.of(board), state.getAvailableMoves());
+	}
+}
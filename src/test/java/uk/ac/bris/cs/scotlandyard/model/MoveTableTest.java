@@ -0,0 +1,80 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move.DoubleMove;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link MoveTable} and that move generation hands out its shared instances
+ */
+public class MoveTableTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	@Test public void testEdgeLookupMatchesEdges() {
+		var graph = setup.compactGraph();
+		for (int node = 0; node <= graph.maxNode(); node++) {
+			if (!graph.contains(node)) continue;
+			for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++)
+				assertThat(graph.edge(node, graph.target(edge))).isEqualTo(edge);
+		}
+		assertThat(graph.edge(1, 2)).isEqualTo(-1);
+		assertThat(graph.edge(1, graph.maxNode() + 1)).isEqualTo(-1);
+	}
+
+	@Test public void testMovesAreShared() {
+		var table = setup.moveTable();
+		assertThat(setup.moveTable()).isSameAs(table);
+		var single = table.single(RED, 1, TAXI, 8);
+		assertThat(single).isEqualTo(new SingleMove(RED, 1, TAXI, 8));
+		assertThat(table.single(RED, 1, TAXI, 8)).isSameAs(single);
+		assertThat(table.single(MRX, 1, SECRET, 8)).isSameAs(table.single(MRX, 1, SECRET, 8));
+		var x2 = table.twice(MRX, 1, TAXI, 8, BUS, 1);
+		assertThat(x2).isEqualTo(new DoubleMove(MRX, 1, TAXI, 8, BUS, 1));
+		assertThat(table.twice(MRX, 1, TAXI, 8, BUS, 1)).isSameAs(x2);
+	}
+
+	@Test public void testMovesOutsideTheTableAreMadeFresh() {
+		var table = setup.moveTable();
+		// no edge between 1 and 2, and detectives don't have double moves
+		assertThat(table.single(RED, 1, TAXI, 2)).isEqualTo(new SingleMove(RED, 1, TAXI, 2));
+		assertThat(table.single(RED, 1, SECRET, 8)).isEqualTo(new SingleMove(RED, 1, SECRET, 8));
+		assertThat(table.twice(RED, 1, TAXI, 8, TAXI, 1))
+				.isEqualTo(new DoubleMove(RED, 1, TAXI, 8, TAXI, 1));
+	}
+
+	@Test public void testGeneratedMovesAreShared() {
+		var mrX = new Player(MRX, defaultMrXTickets(), 86);
+		var detectives = ImmutableList.of(new Player(RED, defaultDetectiveTickets(), 13));
+		GameState first = new MyGameStateFactory().build(setup, mrX, detectives);
+		GameState second = new PackedGameStateFactory().build(setup, mrX, detectives);
+		var moves = second.getAvailableMoves();
+		for (Move move : first.getAvailableMoves())
+			assertThat(moves.asList().get(moves.asList().indexOf(move))).isSameAs(move);
+	}
+}
@@ -0,0 +1,134 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Factory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.DETECTIVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.DOUBLE;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Plays seeded random games on {@link PackedGameStateFactory} and {@link MyGameStateFactory} side
+ * by side and checks that both agree after every move
+ */
+public class PackedGameStateTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static ImmutableList<Player> detectives(int seed, int count) {
+		var locations = generateDetectiveLocations(seed, count);
+		var pieces = DETECTIVES.asList();
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	private static void assertSameBoard(Board expected, Board actual) {
+		assertThat(actual.getPlayers()).isEqualTo(expected.getPlayers());
+		assertThat(actual.getMrXTravelLog()).isEqualTo(expected.getMrXTravelLog());
+		assertThat(actual.getWinner()).isEqualTo(expected.getWinner());
+		assertThat(actual.getAvailableMoves()).isEqualTo(expected.getAvailableMoves());
+		for (Piece piece : expected.getPlayers()) {
+			for (ScotlandYard.Ticket ticket : ScotlandYard.Ticket.values()) {
+				assertThat(actual.getPlayerTickets(piece).orElseThrow().getCount(ticket))
+						.isEqualTo(expected.getPlayerTickets(piece).orElseThrow().getCount(ticket));
+			}
+			if (piece.isDetective()) {
+				var detective = (Piece.Detective) piece;
+				assertThat(actual.getDetectiveLocation(detective))
+						.isEqualTo(expected.getDetectiveLocation(detective));
+			}
+		}
+	}
+
+	@Test public void testRandomPlayoutsMatchReference() {
+		for (int seed = 0; seed < 40; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			var detectives = detectives(seed, 1 + seed % 5);
+			GameState expected = new MyGameStateFactory().build(setup, mrX, detectives);
+			GameState actual = new PackedGameStateFactory().build(setup, mrX, detectives);
+			assertSameBoard(expected, actual);
+			while (expected.getWinner().isEmpty()) {
+				var moves = expected.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				expected = expected.advance(move);
+				actual = actual.advance(move);
+				assertSameBoard(expected, actual);
+			}
+		}
+	}
+
+	@Test public void testMrXIsOnlyGivenTicketsHeWasMadeWith() {
+		for (int seed = 0; seed < 10; seed++) {
+			var random = new Random(seed);
+			var mrXTickets = ImmutableMap.of(TAXI, 24, SECRET, 5, DOUBLE, 2);
+			var mrX = new Player(MRX, mrXTickets, generateMrXLocation(seed));
+			var detectives = detectives(seed, 1 + seed % 5);
+			GameState expected = new MyGameStateFactory().build(setup, mrX, detectives);
+			GameState actual = new PackedGameStateFactory().build(setup, mrX, detectives);
+			while (expected.getWinner().isEmpty()) {
+				var moves = expected.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				expected = expected.advance(move);
+				actual = actual.advance(move);
+				// the reference only counts the tickets MrX was made with
+				for (ScotlandYard.Ticket ticket : mrXTickets.keySet()) {
+					assertThat(actual.getPlayerTickets(MRX).orElseThrow().getCount(ticket))
+							.isEqualTo(expected.getPlayerTickets(MRX).orElseThrow().getCount(ticket));
+				}
+				assertThat(actual.getPlayerTickets(MRX).orElseThrow().getCount(BUS)).isZero();
+				assertThat(actual.getAvailableMoves()).isEqualTo(expected.getAvailableMoves());
+				assertThat(actual.getWinner()).isEqualTo(expected.getWinner());
+			}
+		}
+	}
+
+	@Test public void testMrXWithTooManyTicketsThrowsLikeReference() {
+		var mrX = new Player(MRX, ImmutableMap.of(TAXI, 4, BUS, Tickets.MAX),
+				generateMrXLocation(0));
+		var detectives = detectives(0, 5);
+		for (Factory<GameState> factory : ImmutableList.<Factory<GameState>>of(
+				new MyGameStateFactory(), new PackedGameStateFactory())) {
+			GameState state = factory.build(setup, mrX, detectives);
+			state = state.advance(state.getAvailableMoves().stream()
+					.filter(move -> !move.tickets().iterator().next().equals(BUS))
+					.findFirst().orElseThrow());
+			var bus = state.getAvailableMoves().stream()
+					.filter(move -> move.tickets().iterator().next().equals(BUS))
+					.findFirst().orElseThrow();
+			var before = state;
+			assertThatThrownBy(() -> before.advance(bus))
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessageContaining("Too many");
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.DOUBLE;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.UNDERGROUND;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+
+/**
+ * Tests the packed ticket arithmetic of {@link Player}
+ */
+public class PlayerTest {
+
+	@Test public void testUseAndGiveMatchTheMap() {
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		var moved = mrX.use(ImmutableList.of(DOUBLE, TAXI, SECRET));
+		assertThat(moved.tickets()).isEqualTo(ImmutableMap.of(
+				TAXI, 3, BUS, 3, UNDERGROUND, 3, DOUBLE, 1, SECRET, 4));
+		assertThat(moved.count(DOUBLE)).isEqualTo(1);
+		assertThat(moved.hasAtLeast(SECRET, 4)).isTrue();
+		assertThat(moved.hasAtLeast(SECRET, 5)).isFalse();
+		assertThat(moved.give(ImmutableList.of(DOUBLE, TAXI, SECRET))).isEqualTo(mrX);
+		assertThat(moved.give(DOUBLE).hashCode()).isEqualTo(mrX.use(TAXI).use(SECRET).hashCode());
+		assertThat(mrX.at(46).tickets()).isSameAs(mrX.tickets());
+	}
+
+	@Test public void testOnlyKeysTakeTickets() {
+		var red = new Player(RED, ImmutableMap.of(TAXI, 1, BUS, 0), 13);
+		var given = red.give(ImmutableList.of(BUS, SECRET));
+		assertThat(given.tickets()).isEqualTo(ImmutableMap.of(TAXI, 1, BUS, 1));
+		assertThat(given.has(SECRET)).isFalse();
+		// a map without the key is not the same as one with a zero count
+		assertThat(new Player(RED, ImmutableMap.of(TAXI, 1), 13)).isNotEqualTo(red);
+		assertThatThrownBy(() -> red.use(ImmutableList.of(TAXI, TAXI)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> red.use(UNDERGROUND))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(red.use(TAXI).has(TAXI)).isFalse();
+	}
+
+	@Test public void testAcceptsCountsThatFit() {
+		var red = new Player(RED, ImmutableMap.of(TAXI, 0, BUS, Tickets.MAX), 13);
+		assertThat(Tickets.MAX).isEqualTo(4095);
+		assertThat(red.count(TAXI)).isZero();
+		assertThat(red.count(BUS)).isEqualTo(4095);
+		assertThat(red.give(TAXI).count(TAXI)).isEqualTo(1);
+		assertThat(red.use(BUS).give(BUS)).isEqualTo(red);
+		assertThat(red.tickets()).isEqualTo(ImmutableMap.of(TAXI, 0, BUS, 4095));
+	}
+
+	@Test public void testRejectsCountsThatDoNotFit() {
+		assertThatThrownBy(() -> new Player(RED, ImmutableMap.of(TAXI, -1), 13))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new Player(RED, ImmutableMap.of(TAXI, 4096), 13))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new Player(RED, ImmutableMap.of(TAXI, 4095), 13).give(TAXI))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
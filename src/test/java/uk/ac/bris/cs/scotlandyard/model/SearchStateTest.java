@@ -0,0 +1,179 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.SearchState.Winner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.GREEN;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.DETECTIVES;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.DOUBLE;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.UNDERGROUND;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateDetectiveLocations;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.generateMrXLocation;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Checks {@link SearchState} against {@link MyGameStateFactory} over seeded random games, both
+ * when applying moves and when undoing all of them again
+ */
+public class SearchStateTest {
+
+	private static GameSetup setup;
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static ImmutableList<Player> detectives(int seed, int count) {
+		var locations = generateDetectiveLocations(seed, count);
+		var pieces = DETECTIVES.asList();
+		var builder = ImmutableList.<Player>builder();
+		for (int i = 0; i < count; i++)
+			builder.add(new Player(pieces.get(i), defaultDetectiveTickets(), locations.get(i)));
+		return builder.build();
+	}
+
+	private static ImmutableSet<Move> moves(SearchState state) {
+		var moves = new ArrayList<Move>();
+		state.addMoves(moves);
+		return ImmutableSet.copyOf(moves);
+	}
+
+	private static Winner winner(Board board) {
+		if (board.getWinner().isEmpty()) return Winner.NONE;
+		return board.getWinner().contains(MRX) ? Winner.MRX : Winner.DETECTIVES;
+	}
+
+	@Test public void testApplyAndUndoMatchReference() {
+		for (int seed = 0; seed < 40; seed++) {
+			var random = new Random(seed);
+			var mrX = new Player(MRX, defaultMrXTickets(), generateMrXLocation(seed));
+			var detectives = detectives(seed, 1 + seed % 5);
+			GameState reference = new MyGameStateFactory().build(setup, mrX, detectives);
+			var state = SearchState.of(setup, mrX, detectives);
+			var history = new ArrayList<GameState>();
+			while (true) {
+				assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+				assertThat(state.winner()).isEqualTo(winner(reference));
+				assertThat(state.round()).isEqualTo(reference.getMrXTravelLog().size());
+				if (state.winner() != Winner.NONE) break;
+				var moves = reference.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				history.add(reference);
+				reference = reference.advance(move);
+				state.apply(move);
+			}
+			while (state.depth() > 0) {
+				state.undo();
+				reference = history.remove(history.size() - 1);
+				assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+			}
+			assertThat(state.toString())
+					.isEqualTo(SearchState.of(setup, mrX, detectives).toString());
+		}
+	}
+
+	@Test public void testMrXIsOnlyGivenTicketsHeWasMadeWith() {
+		for (int seed = 0; seed < 10; seed++) {
+			var random = new Random(seed);
+			var mrXTickets = ImmutableMap.of(TAXI, 24, SECRET, 5, DOUBLE, 2);
+			var mrX = new Player(MRX, mrXTickets, generateMrXLocation(seed));
+			var detectives = detectives(seed, 1 + seed % 5);
+			GameState reference = new MyGameStateFactory().build(setup, mrX, detectives);
+			var state = SearchState.of(setup, mrX, detectives);
+			var history = new ArrayList<GameState>();
+			while (reference.getWinner().isEmpty()) {
+				var moves = reference.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				history.add(reference);
+				reference = reference.advance(move);
+				state.apply(move);
+				// the reference only counts the tickets MrX was made with
+				for (ScotlandYard.Ticket ticket : mrXTickets.keySet()) {
+					assertThat(state.tickets(0, ticket))
+							.isEqualTo(reference.getPlayerTickets(MRX).orElseThrow().getCount(ticket));
+				}
+				assertThat(state.tickets(0, BUS)).isZero();
+				assertThat(state.positionKey()).isEqualTo(reference.positionKey());
+				assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+			}
+			while (state.depth() > 0) {
+				state.undo();
+				reference = history.remove(history.size() - 1);
+				assertThat(state.positionKey()).isEqualTo(reference.positionKey());
+				assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+			}
+			assertThat(state.toString())
+					.isEqualTo(SearchState.of(setup, mrX, detectives).toString());
+		}
+	}
+
+	@Test public void testStateFromBoardMatchesReference() {
+		var mrX = new Player(MRX, defaultMrXTickets(), generateMrXLocation(7));
+		GameState reference = new MyGameStateFactory().build(setup, mrX, detectives(7, 5));
+		var random = new Random(7);
+		for (int i = 0; i < 12 && reference.getWinner().isEmpty(); i++) {
+			var moves = reference.getAvailableMoves().asList();
+			var move = moves.get(random.nextInt(moves.size()));
+			reference = reference.advance(move);
+			if (move.commencedBy().isMrX()) {
+				mrX = mrX.at(move.visit(new Move.FunctionalVisitor<>(
+						m -> m.destination, m -> m.destination2)));
+			}
+			var state = SearchState.of(reference, mrX.location());
+			assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+		}
+	}
+
+	@Test public void testStateFromBoardKeepsBlockedDetectivesToMove() {
+		// red only has an underground ticket at a station without one, so can never move
+		var red = new Player(RED, ImmutableMap.of(TAXI, 0, BUS, 0, UNDERGROUND, 1,
+				DOUBLE, 0, SECRET, 0), 2);
+		var mrX = new Player(MRX, defaultMrXTickets(), 45);
+		GameState reference = new MyGameStateFactory().build(setup, mrX,
+				ImmutableList.of(red, new Player(BLUE, defaultDetectiveTickets(), 13),
+						new Player(GREEN, defaultDetectiveTickets(), 91)));
+		var random = new Random(6);
+		for (int i = 0; i < 3; i++) {
+			var moves = reference.getAvailableMoves().asList();
+			var move = moves.get(random.nextInt(moves.size()));
+			reference = reference.advance(move);
+			if (move.commencedBy().isMrX()) {
+				mrX = mrX.at(move.visit(new Move.FunctionalVisitor<>(
+						m -> m.destination, m -> m.destination2)));
+			}
+			var state = SearchState.of(reference, mrX.location());
+			assertThat(state.isMrXTurn()).isFalse();
+			assertThat(state.isRemaining(1)).isTrue();
+			assertThat(state.positionKey()).isEqualTo(reference.positionKey());
+			assertThat(state.winner()).isEqualTo(winner(reference));
+			assertThat(moves(state)).isEqualTo(reference.getAvailableMoves());
+		}
+		// red never moves, so MrX wins once the others have
+		assertThat(reference.getWinner()).containsExactly(MRX);
+	}
+
+}
@@ -0,0 +1,41 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.BUS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.SECRET;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+
+/**
+ * Tests the persistent {@link TravelLog}
+ */
+public class TravelLogTest {
+
+	private static final LogEntry FIRST = LogEntry.hidden(TAXI);
+	private static final LogEntry SECOND = LogEntry.reveal(BUS, 46);
+	private static final LogEntry THIRD = LogEntry.hidden(SECRET);
+
+	@Test public void testAppendKeepsTheOriginal() {
+		var one = TravelLog.EMPTY.append(FIRST);
+		var two = one.append(SECOND);
+		var other = one.append(THIRD);
+		assertThat(TravelLog.EMPTY.asList()).isEmpty();
+		assertThat(one.asList()).containsExactly(FIRST);
+		assertThat(two.size()).isEqualTo(2);
+		assertThat(two.asList()).containsExactly(FIRST, SECOND);
+		assertThat(other.asList()).containsExactly(FIRST, THIRD);
+		assertThat(two.append(THIRD).asList()).containsExactly(FIRST, SECOND, THIRD);
+		assertThat(two.asList()).isSameAs(two.asList());
+	}
+
+	@Test public void testOfKeepsTheList() {
+		var entries = ImmutableList.of(FIRST, SECOND);
+		var log = TravelLog.of(entries);
+		assertThat(log.size()).isEqualTo(2);
+		assertThat(log.asList()).isSameAs(entries);
+		assertThat(log.append(THIRD).asList()).containsExactly(FIRST, SECOND, THIRD);
+	}
+}
@@ -0,0 +1,129 @@
+package uk.ac.bris.cs.scotlandyard.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Resources;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+
+import uk.ac.bris.cs.scotlandyard.model.Board.GameState;
+import uk.ac.bris.cs.scotlandyard.model.Move.SingleMove;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.BLUE;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.Detective.RED;
+import static uk.ac.bris.cs.scotlandyard.model.Piece.MrX.MRX;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.STANDARD24ROUNDS;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.Ticket.TAXI;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultDetectiveTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.defaultMrXTickets;
+import static uk.ac.bris.cs.scotlandyard.model.ScotlandYard.readGraph;
+
+/**
+ * Tests {@link Zobrist} keys and their incremental updates in the game states
+ */
+public class ZobristTest {
+
+	private static GameSetup setup;
+	private static final Player mrX = new Player(MRX, defaultMrXTickets(), 86);
+	private static final ImmutableList<Player> detectives = ImmutableList.of(
+			new Player(RED, defaultDetectiveTickets(), 13),
+			new Player(BLUE, defaultDetectiveTickets(), 94));
+
+	@BeforeClass public static void setUp() throws IOException {
+		setup = new GameSetup(readGraph(Resources.toString(Resources.getResource("graph.txt"),
+				StandardCharsets.UTF_8)), STANDARD24ROUNDS);
+	}
+
+	private static int mrXLocation(SearchState state) { return state.location(0); }
+
+	@Test public void testIncrementalKeysMatchFromScratch() {
+		for (int seed = 0; seed < 10; seed++) {
+			var random = new Random(seed);
+			GameState reference = new MyGameStateFactory().build(setup, mrX, detectives);
+			GameState packed = new PackedGameStateFactory().build(setup, mrX, detectives);
+			var search = SearchState.of(setup, mrX, detectives);
+			var keys = new ArrayList<Long>();
+			while (true) {
+				long key = reference.positionKey();
+				assertThat(packed.positionKey()).isEqualTo(key);
+				assertThat(search.positionKey()).isEqualTo(key);
+				assertThat(search.copy().positionKey()).isEqualTo(key);
+				keys.add(key);
+				if (!reference.getWinner().isEmpty()) break;
+				// the board only shows who is to move through their moves, which MrX always has
+				if (search.isMrXTurn())
+					assertThat(Zobrist.of(reference, mrXLocation(search))).isEqualTo(key);
+				var moves = reference.getAvailableMoves().asList();
+				var move = moves.get(random.nextInt(moves.size()));
+				reference = reference.advance(move);
+				packed = packed.advance(move);
+				search.apply(move);
+			}
+			// every position of a game is a different one
+			assertThat(new HashSet<>(keys)).hasSize(keys.size());
+			for (int i = keys.size() - 1; i > 0; i--) {
+				search.undo();
+				assertThat(search.positionKey()).isEqualTo(keys.get(i - 1));
+			}
+		}
+	}
+
+	@Test public void testTranspositionsShareKeys() {
+		GameState state = new MyGameStateFactory().build(setup, mrX, detectives);
+		state = state.advance(new SingleMove(MRX, 86, TAXI, 69));
+		var red = new SingleMove(RED, 13, TAXI, 4);
+		var blue = new SingleMove(BLUE, 94, TAXI, 93);
+		GameState redFirst = state.advance(red).advance(blue);
+		GameState blueFirst = state.advance(blue).advance(red);
+		assertThat(redFirst.positionKey()).isEqualTo(blueFirst.positionKey());
+		assertThat(redFirst.positionKey()).isNotEqualTo(state.positionKey());
+	}
+
+	@Test public void testDefaultKeyUsesTheBoard() {
+		GameState state = new MyGameStateFactory().build(setup, mrX, detectives);
+		GameState wrapped = new ForwardingGameState(state);
+		assertThat(wrapped.positionKey()).isEqualTo(Zobrist.of(state, -1));
+		assertThat(wrapped.positionKey()).isNotEqualTo(state.positionKey());
+	}
+
+	@Test public void testKeysOutsideTheTablesAreStable() {
+		assertThat(Zobrist.location(MRX, 5000)).isEqualTo(Zobrist.location(MRX, 5000));
+		assertThat(Zobrist.location(MRX, 5000)).isNotEqualTo(Zobrist.location(RED, 5000));
+		assertThat(Zobrist.tickets(RED, TAXI, 100)).isNotEqualTo(Zobrist.tickets(RED, TAXI, 101));
+		assertThat(Zobrist.round(100)).isNotEqualTo(Zobrist.round(3));
+	}
+
+	// a state that only has the default positionKey
+	private static final class ForwardingGameState implements GameState {
+		private final GameState state;
+		ForwardingGameState(GameState state) { this.state = state; }
+		@Override public GameSetup getSetup() { return state.getSetup(); }
+		@Override public ImmutableSet<Piece> getPlayers() {
+			return state.getPlayers();
+		}
+		@Override public Optional<Integer> getDetectiveLocation(
+				Piece.Detective detective) { return state.getDetectiveLocation(detective); }
+		@Override public Optional<TicketBoard> getPlayerTickets(Piece piece) {
+			return state.getPlayerTickets(piece);
+		}
+		@Override public ImmutableList<LogEntry> getMrXTravelLog() {
+			return state.getMrXTravelLog();
+		}
+		@Override public ImmutableSet<Piece> getWinner() {
+			return state.getWinner();
+		}
+		@Override public ImmutableSet<Move> getAvailableMoves() {
+			return state.getAvailableMoves();
+		}
+		@Override public GameState advance(Move move) { return state.advance(move); }
+	}
+}